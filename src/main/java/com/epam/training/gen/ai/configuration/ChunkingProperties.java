@@ -0,0 +1,79 @@
+package com.epam.training.gen.ai.configuration;
+
+import com.epam.training.gen.ai.service.ChunkingSettings;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration properties for splitting document text into chunks.
+ * <p>
+ * The {@code chunking.strategy}, {@code chunking.chunk-size} and {@code chunking.overlap} properties
+ * apply to every collection. Any of them can be overridden for a single collection with
+ * {@code chunking.collections.<collection-name>.<property>}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "chunking")
+public class ChunkingProperties {
+
+    /**
+     * The name of the default chunking strategy.
+     */
+    private String strategy;
+
+    /**
+     * The default maximum number of characters in a chunk.
+     */
+    private int chunkSize;
+
+    /**
+     * The default number of characters shared by consecutive chunks.
+     */
+    private int overlap;
+
+    /**
+     * Per-collection overrides, keyed by collection name.
+     */
+    private Map<String, CollectionChunking> collections = new HashMap<>();
+
+    /**
+     * Resolves the chunking settings for a collection, applying its overrides to the defaults.
+     *
+     * @param collectionName the name of the collection
+     * @return the validated settings
+     * @throws IllegalArgumentException if the resolved settings are invalid
+     */
+    public ChunkingSettings forCollection(String collectionName) {
+        CollectionChunking overrides = collections.getOrDefault(collectionName, new CollectionChunking());
+        return new ChunkingSettings(
+                overrides.getStrategy() != null ? overrides.getStrategy() : strategy,
+                overrides.getChunkSize() != null ? overrides.getChunkSize() : chunkSize,
+                overrides.getOverlap() != null ? overrides.getOverlap() : overlap);
+    }
+
+    /**
+     * Chunking overrides for one collection. Unset properties fall back to the defaults.
+     */
+    @Data
+    public static class CollectionChunking {
+
+        /**
+         * The name of the chunking strategy.
+         */
+        private String strategy;
+
+        /**
+         * The maximum number of characters in a chunk.
+         */
+        private Integer chunkSize;
+
+        /**
+         * The number of characters shared by consecutive chunks.
+         */
+        private Integer overlap;
+    }
+}
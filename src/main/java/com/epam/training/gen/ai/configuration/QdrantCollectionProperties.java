@@ -0,0 +1,106 @@
+package com.epam.training.gen.ai.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configuration properties for the Qdrant collections created by the application, under
+ * {@code vector-store.qdrant}.
+ * <p>
+ * These settings apply when a collection is created. Existing collections are checked against them
+ * at startup, but never changed: the vector size must match, while differing storage, index or
+ * quantization settings are only reported unless {@code fail-on-mismatch} is set, since changing
+ * them rebuilds the collection on the server.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "vector-store.qdrant")
+public class QdrantCollectionProperties {
+
+    /**
+     * Whether the original vectors are kept on disk and memory-mapped instead of held in RAM.
+     */
+    private boolean onDiskVectors;
+
+    /**
+     * Whether payloads are kept on disk and only read for returned points.
+     */
+    private boolean onDiskPayload;
+
+    /**
+     * Whether an existing collection whose storage, index or quantization settings differ from these
+     * stops the application, instead of the differences only being logged.
+     */
+    private boolean failOnMismatch;
+
+    /**
+     * The HNSW index settings.
+     */
+    private Hnsw hnsw = new Hnsw();
+
+    /**
+     * The quantization settings.
+     */
+    private Quantization quantization = new Quantization();
+
+    /**
+     * HNSW index settings of a collection.
+     */
+    @Data
+    public static class Hnsw {
+
+        /**
+         * The number of links per node.
+         */
+        private int m;
+
+        /**
+         * The size of the candidate list used while building the index.
+         */
+        private int efConstruct;
+
+        /**
+         * The size of the candidate list used while searching, or {@code null} for the server default.
+         */
+        private Integer efSearch;
+
+        /**
+         * Whether the index graph is kept on disk instead of in RAM.
+         */
+        private boolean onDisk;
+    }
+
+    /**
+     * Quantization settings of a collection.
+     */
+    @Data
+    public static class Quantization {
+
+        /**
+         * The quantization type: {@code none}, {@code scalar} for int8 or {@code binary} for one bit per dimension.
+         */
+        private String type;
+
+        /**
+         * Whether the quantized vectors are pinned in RAM, which makes sense when the original
+         * vectors are on disk.
+         */
+        private boolean alwaysRam;
+
+        /**
+         * The quantile of values used to pick the scalar quantization range, clipping outliers.
+         */
+        private float quantile;
+
+        /**
+         * Whether search results found on quantized vectors are rescored with the original vectors.
+         */
+        private boolean rescore;
+
+        /**
+         * How many more candidates than requested are fetched on quantized vectors before rescoring.
+         */
+        private double oversampling;
+    }
+}
@@ -3,6 +3,7 @@ package com.epam.training.gen.ai.configuration;
 import io.qdrant.client.QdrantClient;
 import io.qdrant.client.QdrantGrpcClient;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -11,9 +12,11 @@ import org.springframework.context.annotation.Configuration;
  * <p>
  * This configuration defines a bean that provides a client for interacting
  * with a Qdrant service. The client is built using gRPC to connect to a
- * Qdrant instance running at the specified host and port.
+ * Qdrant instance running at the specified host and port. It is only active when
+ * Qdrant is the configured vector store.
  */
 @Configuration
+@ConditionalOnProperty(name = "vector-store.type", havingValue = "qdrant")
 public class QdrantConfiguration {
 
     /**
@@ -6,30 +6,40 @@ import com.epam.training.gen.ai.service.ChatService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
 
 /**
  * Controller class for handling chat-related API requests.
- * This class provides an endpoint for sending chat input to a service and returning the generated response.
+ * This class provides endpoints for sending chat input to a service and returning the generated response,
+ * either in one piece or streamed as Server-Sent Events.
  */
 @Controller
 public class ChatController {
 
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
     private final ChatService chatService;
+    private final Duration streamingTimeout;
 
     /**
      * Constructs a new {@link ChatController} with the given {@link ChatService}.
      *
-     * @param chatService the service responsible for handling chat logic
+     * @param chatService      the service responsible for handling chat logic
+     * @param streamingTimeout how long a streamed response may take
      */
     @Autowired
-    public ChatController(ChatService chatService) {
+    public ChatController(ChatService chatService, @Value("${chat.streaming.timeout}") Duration streamingTimeout) {
         this.chatService = chatService;
+        this.streamingTimeout = streamingTimeout;
     }
 
     /**
@@ -37,23 +47,43 @@ public class ChatController {
      * Accepts a chat input request, processes it using the chat service, and returns the response.
      *
      * @param request the input request containing user ID, input text, and model ID
-     * @return a {@link ResponseEntity} containing the chat response or an error message
+     * @return a {@link Mono} emitting a {@link ResponseEntity} containing the chat response or an error message
      */
     @PostMapping("/chat")
-    public ResponseEntity<InputResponse> controller(@RequestBody InputRequest request) {
+    public Mono<ResponseEntity<InputResponse>> controller(@RequestBody InputRequest request) {
         logger.info("Received chat input: {}", request.getInput());
+        return chatService.ask(request.getUserId(), request.getInput(), request.getModelId())
+                .map(response -> ResponseEntity.ok(new InputResponse(response)))
+                .onErrorResume(IllegalArgumentException.class, e -> {
+                    logger.error("Invalid model ID", e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                            .body(new InputResponse(e.getMessage())));
+                })
+                .onErrorResume(e -> {
+                    logger.error("Error processing chat request", e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                            .body(new InputResponse("An error occurred while processing your request.")));
+                });
+    }
+
+    /**
+     * Handles POST requests to the /chat/stream endpoint.
+     * Accepts a chat input request and streams the response as Server-Sent Events while the model
+     * generates it: {@code delta} events with the text, then a {@code done} or {@code error} event.
+     *
+     * @param request the input request containing user ID, input text, and model ID
+     * @return an {@link SseEmitter} streaming the response, or a bad request status if the model ID is unknown
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@RequestBody InputRequest request) {
+        logger.info("Received streaming chat input: {}", request.getInput());
         try {
-            String response = chatService.ask(request.getUserId(), request.getInput(), request.getModelId());
-            return ResponseEntity.ok(new InputResponse(response));
+            return ResponseEntity.ok(ChatStreams.toEmitter(
+                    chatService.askStreaming(request.getUserId(), request.getInput(), request.getModelId()),
+                    streamingTimeout));
         } catch (IllegalArgumentException e) {
             logger.error("Invalid model ID", e);
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(new InputResponse(e.getMessage()));
-        } catch (Exception e) {
-            logger.error("Error processing chat request", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(new InputResponse("An error occurred while processing your request."));
+            return ResponseEntity.badRequest().build();
         }
     }
 }
-
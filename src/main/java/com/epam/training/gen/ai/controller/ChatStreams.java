@@ -0,0 +1,88 @@
+package com.epam.training.gen.ai.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Adapts a stream of chat answer deltas to Server-Sent Events.
+ * <p>
+ * Every delta is sent as a {@code delta} event carrying {@code {"text": ...}}, a finished answer
+ * ends with an empty {@code done} event, and a failure with an {@code error} event carrying
+ * {@code {"message": ...}}. Deltas are JSON encoded because they may contain line breaks, which
+ * would otherwise end the event. If the client goes away or the emitter times out, the stream is
+ * cancelled, which also stops the model call.
+ * <p>
+ * Events are written on the bounded elastic scheduler rather than on the thread emitting the
+ * deltas, which for a model call is an HTTP client event loop: a servlet write blocks while the
+ * client is slow to read, and would otherwise stall every other call sharing that event loop.
+ */
+@Slf4j
+final class ChatStreams {
+
+    private static final String DONE = "done";
+
+    private ChatStreams() {
+    }
+
+    /**
+     * Subscribes to a stream of answer deltas and relays it to a new emitter.
+     *
+     * @param deltas  the answer text deltas
+     * @param timeout how long the emitter stays open
+     * @return the emitter to return from the handler method
+     */
+    static SseEmitter toEmitter(Flux<String> deltas, Duration timeout) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Disposable.Swap subscription = Disposables.swap();
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(error -> subscription.dispose());
+        emitter.onCompletion(subscription::dispose);
+        subscription.update(deltas.publishOn(Schedulers.boundedElastic()).subscribe(
+                delta -> send(emitter, subscription, SseEmitter.event()
+                        .name("delta")
+                        .data(Map.of("text", delta), MediaType.APPLICATION_JSON)),
+                error -> {
+                    log.error("Error streaming chat answer", error);
+                    String message = error instanceof IllegalArgumentException
+                            ? error.getMessage()
+                            : "An error occurred while processing your request.";
+                    if (send(emitter, subscription, SseEmitter.event()
+                            .name("error")
+                            .data(Map.of("message", message), MediaType.APPLICATION_JSON))) {
+                        emitter.complete();
+                    }
+                },
+                () -> {
+                    if (send(emitter, subscription, SseEmitter.event().name(DONE).data(""))) {
+                        emitter.complete();
+                    }
+                }));
+        return emitter;
+    }
+
+    /**
+     * Sends an event, cancelling the stream if the client cannot be written to.
+     *
+     * @return whether the event was sent
+     */
+    private static boolean send(SseEmitter emitter, Disposable subscription, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Chat stream client went away", e);
+            subscription.dispose();
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+}
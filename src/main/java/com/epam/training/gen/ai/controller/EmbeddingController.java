@@ -3,17 +3,26 @@ package com.epam.training.gen.ai.controller;
 import com.azure.ai.openai.models.EmbeddingItem;
 import com.epam.training.gen.ai.domain.EmbeddingModelRequest;
 import com.epam.training.gen.ai.domain.EmbeddingModelResponse;
+import com.epam.training.gen.ai.domain.EmbeddingSearchRequest;
+import com.epam.training.gen.ai.domain.IngestionJobStatus;
+import com.epam.training.gen.ai.domain.RecallReport;
+import com.epam.training.gen.ai.service.IngestionJobService;
+import com.epam.training.gen.ai.service.SearchOptions;
 import com.epam.training.gen.ai.service.SimpleVectorService;
-import io.qdrant.client.grpc.Points;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * REST controller for managing embedding-related operations.
@@ -26,67 +35,136 @@ import java.util.concurrent.ExecutionException;
 public class EmbeddingController {
 
     private final SimpleVectorService vectorService;
+    private final IngestionJobService ingestionJobService;
 
     /**
      * Constructor for EmbeddingController.
      *
-     * @param vectorService the service responsible for embedding operations
+     * @param vectorService       the service responsible for embedding operations
+     * @param ingestionJobService the service running ingestion as asynchronous jobs
      */
-    public EmbeddingController(SimpleVectorService vectorService) {
+    public EmbeddingController(SimpleVectorService vectorService, IngestionJobService ingestionJobService) {
         this.vectorService = vectorService;
+        this.ingestionJobService = ingestionJobService;
     }
 
     /**
      * Endpoint to build embeddings from the provided text.
      *
      * @param model the request containing the input text for building embeddings
-     * @return a ResponseEntity containing the list of generated embeddings or an error status
+     * @return a Mono emitting a ResponseEntity containing the list of generated embeddings or an error status
      */
     @PostMapping("/build")
-    public ResponseEntity<List<EmbeddingItem>> buildEmbedding(@RequestBody EmbeddingModelRequest model) {
-        try {
-            List<EmbeddingItem> embeddings = vectorService.getEmbeddings(model.getText());
-            return ResponseEntity.ok(embeddings);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
-        }
+    public Mono<ResponseEntity<List<EmbeddingItem>>> buildEmbedding(@RequestBody EmbeddingModelRequest model) {
+        return vectorService.getEmbeddings(model.getText())
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null)));
     }
 
     /**
      * Endpoint to build embeddings from the provided text and store them in the vector database.
+     * The work runs as a background job whose progress can be polled through the ingestion job endpoints.
      *
      * @param model the request containing the input text for building and storing embeddings
-     * @return a ResponseEntity containing a success message or an error status
+     * @return a ResponseEntity containing the submitted job status or an error status if the job queue is full
      */
     @PostMapping("/build-and-store")
-    public ResponseEntity<String> buildAndStoreEmbedding(@RequestBody EmbeddingModelRequest model) {
+    public ResponseEntity<IngestionJobStatus> buildAndStoreEmbedding(@RequestBody EmbeddingModelRequest model) {
         try {
-            vectorService.processAndSaveText(model.getText());
-            return ResponseEntity.ok("Embeddings successfully built and stored.");
-        } catch (ExecutionException | InterruptedException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Failed to process and save embeddings.");
+            String text = model.getText();
+            IngestionJobStatus job = ingestionJobService.submit("text",
+                    progress -> vectorService.processAndSaveText(text, progress));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
         }
     }
 
     /**
      * Endpoint to search for the closest embeddings based on the provided text.
      *
-     * @param model the request containing the input text for searching closest embeddings
-     * @return a ResponseEntity containing a list of matching embeddings or an error status
+     * @param request the request containing the input text and optionally the limit, offset, score
+     *                threshold and payload fields of the search
+     * @return a Mono emitting a ResponseEntity containing a list of matching embeddings, a bad request
+     * status if the search options are invalid, or an error status
      */
     @PostMapping("/search")
-    public ResponseEntity<List<EmbeddingModelResponse>> searchClosestEmbeddings(
-            @RequestBody EmbeddingModelRequest model) {
+    public Mono<ResponseEntity<List<EmbeddingModelResponse>>> searchClosestEmbeddings(
+            @RequestBody EmbeddingSearchRequest request) {
+        SearchOptions options;
         try {
-            List<Points.ScoredPoint> results = vectorService.search(model.getText());
-            var t = results.stream()
-                    .map(EmbeddingModelResponse::toDTO)
-                    .toList();
-            return ResponseEntity.ok(t);
-        } catch (ExecutionException | InterruptedException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+            options = toSearchOptions(request);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.badRequest().build());
         }
+        return vectorService.search(request.getText(), options)
+                .map(EmbeddingModelResponse::toDTO)
+                .collectList()
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null)));
+    }
+
+    /**
+     * Endpoint to search for the closest embeddings based on the provided text, streaming the
+     * matches as newline-delimited JSON. Each match is written and flushed as soon as it is emitted,
+     * so the response never holds the whole result list.
+     *
+     * @param request the request containing the input text and optionally the limit, offset, score
+     *                threshold and payload fields of the search
+     * @return a ResponseEntity streaming one JSON object per match, or a bad request status if the
+     * search options are invalid
+     */
+    @PostMapping(value = "/search/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<EmbeddingModelResponse>> streamClosestEmbeddings(
+            @RequestBody EmbeddingSearchRequest request) {
+        SearchOptions options;
+        try {
+            options = toSearchOptions(request);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        Flux<EmbeddingModelResponse> matches = vectorService.search(request.getText(), options)
+                .map(EmbeddingModelResponse::toDTO);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(matches);
+    }
+
+    /**
+     * Endpoint to measure the recall@k of the approximate vector search against exact search,
+     * using stored points as queries. Only available with the in-process vector store.
+     *
+     * @param k       the number of neighbours to compare
+     * @param queries the maximum number of sampled queries
+     * @return a Mono emitting a ResponseEntity containing the recall report, or a not implemented
+     * status if the vector store does not support the measurement
+     */
+    @GetMapping("/recall")
+    public Mono<ResponseEntity<RecallReport>> measureRecall(@RequestParam(defaultValue = "10") int k,
+                                                            @RequestParam(defaultValue = "100") int queries) {
+        if (k < 1 || queries < 1) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return vectorService.measureRecall(k, queries)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    HttpStatus status = e instanceof UnsupportedOperationException
+                            ? HttpStatus.NOT_IMPLEMENTED
+                            : HttpStatus.INTERNAL_SERVER_ERROR;
+                    return Mono.just(ResponseEntity.status(status).build());
+                });
     }
-}
 
+    /**
+     * Validates a search request and resolves its options against the configured defaults.
+     *
+     * @param request the search request
+     * @return the search options
+     * @throws IllegalArgumentException if the text is missing or an option is out of range
+     */
+    private SearchOptions toSearchOptions(EmbeddingSearchRequest request) {
+        if (request.getText() == null || request.getText().isBlank()) {
+            throw new IllegalArgumentException("Search text must not be empty");
+        }
+        return vectorService.searchOptions(request.getLimit(), request.getOffset(), request.getScoreThreshold(),
+                request.getFields());
+    }
+}
@@ -0,0 +1,53 @@
+package com.epam.training.gen.ai.controller;
+
+import com.epam.training.gen.ai.domain.IngestionJobStatus;
+import com.epam.training.gen.ai.service.IngestionJobService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST controller for monitoring and cancelling asynchronous ingestion jobs.
+ * <p>
+ * Jobs are created by the context upload and embedding build-and-store endpoints.
+ */
+@RestController
+@RequestMapping("/ingestion-jobs")
+public class IngestionJobController {
+
+    private final IngestionJobService ingestionJobService;
+
+    /**
+     * Constructor for IngestionJobController.
+     *
+     * @param ingestionJobService the service running ingestion jobs
+     */
+    public IngestionJobController(IngestionJobService ingestionJobService) {
+        this.ingestionJobService = ingestionJobService;
+    }
+
+    /**
+     * Endpoint to poll the status and progress of an ingestion job.
+     *
+     * @param jobId the identifier returned when the job was submitted
+     * @return a ResponseEntity containing the job status, or a not found status for unknown jobs
+     */
+    @GetMapping("/{jobId}")
+    public ResponseEntity<IngestionJobStatus> getStatus(@PathVariable String jobId) {
+        return ResponseEntity.of(ingestionJobService.getStatus(jobId));
+    }
+
+    /**
+     * Endpoint to cancel a queued or running ingestion job.
+     *
+     * @param jobId the identifier returned when the job was submitted
+     * @return a ResponseEntity containing the job status after cancellation, or a not found status for unknown jobs
+     */
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<IngestionJobStatus> cancel(@PathVariable String jobId) {
+        return ResponseEntity.of(ingestionJobService.cancel(jobId));
+    }
+}
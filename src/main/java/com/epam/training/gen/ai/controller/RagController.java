@@ -1,11 +1,15 @@
 package com.epam.training.gen.ai.controller;
 
+import com.epam.training.gen.ai.domain.IngestionJobStatus;
 import com.epam.training.gen.ai.domain.InputRequest;
 import com.epam.training.gen.ai.service.ChatService;
 import com.epam.training.gen.ai.service.RagService;
 import com.microsoft.semantickernel.Kernel;
 import com.microsoft.semantickernel.semanticfunctions.KernelFunctionArguments;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -13,6 +17,11 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Controller for handling operations related to Retrieval-Augmented Generation (RAG).
@@ -24,67 +33,122 @@ public class RagController {
     private final RagService ragService;
     private final ChatService chatService;
     private final Kernel kernel;
+    private final Duration streamingTimeout;
 
     /**
      * Constructor to initialize the RagController with required services.
      *
-     * @param ragService  The service responsible for handling context storage and retrieval.
-     * @param chatService The service responsible for interacting with the chat system.
+     * @param ragService       The service responsible for handling context storage and retrieval.
+     * @param chatService      The service responsible for interacting with the chat system.
+     * @param kernel           The kernel invoking the content retriever plugin.
+     * @param streamingTimeout How long a streamed answer may take.
      */
     @Autowired
-    public RagController(RagService ragService, ChatService chatService, Kernel kernel) {
+    public RagController(RagService ragService, ChatService chatService, Kernel kernel,
+                         @Value("${chat.streaming.timeout}") Duration streamingTimeout) {
         this.ragService = ragService;
         this.chatService = chatService;
         this.kernel = kernel;
+        this.streamingTimeout = streamingTimeout;
     }
 
     /**
      * Endpoint to upload context data.
-     * Accepts a file containing context information and saves it using the RAG service.
+     * Accepts a file containing context information and submits an ingestion job for it using the RAG service.
+     * The job runs in the background; its progress can be polled through the ingestion job endpoints.
      *
      * @param content The file containing the context to be uploaded.
-     * @return A ResponseEntity with a success or error message.
+     * @return A ResponseEntity with the submitted job status, or an error status if the file cannot be
+     * stored or the job queue is full.
      */
     @PostMapping("/upload-context")
-    public ResponseEntity<String> uploadContext(@RequestParam MultipartFile content) {
+    public ResponseEntity<IngestionJobStatus> uploadContext(@RequestParam MultipartFile content) {
         try {
-            ragService.saveContext(content);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(ragService.submitContext(content));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
         } catch (Exception e) {
-            return ResponseEntity.badRequest().body(e.getMessage());
+            return ResponseEntity.badRequest().build();
         }
-        return ResponseEntity.ok("Context uploaded successfully.");
     }
 
     /**
      * Endpoint to search the context and answer a query.
      * Generates a response based on the context and the question provided in the request.
+     * Answers to similar earlier questions about the same collection may be served from the response cache.
      *
      * @param request The input request containing the question, input text, and model ID.
-     * @return A ResponseEntity containing the result or an error message.
+     * @return A Mono emitting a ResponseEntity containing the result or an error message.
      */
     @PostMapping("/answer-by-context")
-    public ResponseEntity<String> searchContext(@RequestBody InputRequest request) {
-        try {
-            String context = kernel.invokeAsync("ContentRetrieverPlugin", "ContentRetriever")
-                    .withArguments(
-                            KernelFunctionArguments.builder()
-                                    .withVariable("userQuestion", request.getInput())
-                                    .build()
-                    )
-                    .withResultType(String.class).block().getResult();
+    public Mono<ResponseEntity<String>> searchContext(@RequestBody InputRequest request) {
+        return chatService.askAboutContext(
+                        request.getUserId(),
+                        request.getInput(),
+                        request.getModelId(),
+                        ragService.getCollectionName(),
+                        buildContextPrompt(request.getInput()))
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> Mono.just(ResponseEntity.badRequest().body(e.getMessage())));
+    }
 
-            String prompt = String.format(
-                    "Use the information that you get from the context and answer the question." +
-                            "If you don't have context, just say that you don't know, don't try to make up an answer." +
-                            "\nQuestion: %s" +
-                            "\nContext: %s",
-                    request.getInput(),
-                    context
-            );
-            String result = chatService.ask(request.getUserId(), prompt, request.getModelId());
-            return ResponseEntity.ok(result);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(e.getMessage());
+    /**
+     * Endpoint to search the context and stream the answer to a query as Server-Sent Events while
+     * the model generates it: {@code delta} events with the text, then a {@code done} or {@code error} event.
+     *
+     * @param request The input request containing the question, input text, and model ID.
+     * @return An SseEmitter streaming the answer, or a bad request status if the model ID is unknown.
+     */
+    @PostMapping(value = "/answer-by-context/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamAnswerByContext(@RequestBody InputRequest request) {
+        try {
+            return ResponseEntity.ok(ChatStreams.toEmitter(
+                    chatService.askAboutContextStreaming(
+                            request.getUserId(),
+                            request.getInput(),
+                            request.getModelId(),
+                            ragService.getCollectionName(),
+                            buildContextPrompt(request.getInput())),
+                    streamingTimeout));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
     }
+
+    /**
+     * Retrieves the context relevant to a question and combines both into a prompt.
+     *
+     * Nothing is retrieved until the returned Mono is subscribed to, so a cached answer skips the retrieval.
+     *
+     * @param question The question to answer.
+     * @return A Mono emitting the prompt for the chat model.
+     */
+    private Mono<String> buildContextPrompt(String question) {
+        return Mono.defer(() -> kernel.invokeAsync("ContentRetrieverPlugin", "ContentRetriever")
+                        .withArguments(
+                                KernelFunctionArguments.builder()
+                                        .withVariable("userQuestion", question)
+                                        .build()
+                        )
+                        .withResultType(String.class))
+                .map(result -> formatContextPrompt(question, result.getResult()));
+    }
+
+    /**
+     * Combines a question and its retrieved context into a prompt.
+     *
+     * @param question The question to answer.
+     * @param context  The context retrieved for the question.
+     * @return The prompt for the chat model.
+     */
+    private static String formatContextPrompt(String question, String context) {
+        return String.format(
+                "Use the information that you get from the context and answer the question." +
+                        "If you don't have context, just say that you don't know, don't try to make up an answer." +
+                        "\nQuestion: %s" +
+                        "\nContext: %s",
+                question,
+                context
+        );
+    }
 }
@@ -1,6 +1,8 @@
 package com.epam.training.gen.ai.domain;
 
-import io.qdrant.client.grpc.Points;
+import com.epam.training.gen.ai.service.VectorMatch;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -11,8 +13,10 @@ import lombok.Setter;
 /**
  * A data transfer object (DTO) representing a response for embedding-related operations.
  * <p>
- * This class encapsulates the ID and score of a vector point returned from search operations.
+ * This class encapsulates the ID and score of a vector point returned from search operations, along
+ * with the payload fields selected by the search. Fields that were not selected are left out of the JSON.
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Data
 @Getter
 @Setter
@@ -24,7 +28,7 @@ public class EmbeddingModelResponse {
     /**
      * The unique identifier of the embedding vector.
      */
-    private Long id;
+    private String id;
 
     /**
      * The similarity score of the embedding vector.
@@ -38,16 +42,24 @@ public class EmbeddingModelResponse {
     private String chunk;
 
     /**
-     * Converts a {@link Points.ScoredPoint} object into an {@link EmbeddingModelResponse} DTO.
+     * The identifier of the document the chunk belongs to.
+     * This field is serialized and deserialized as "document-id" in JSON.
+     */
+    @JsonProperty("document-id")
+    private String documentId;
+
+    /**
+     * Converts a {@link VectorMatch} object into an {@link EmbeddingModelResponse} DTO.
      *
-     * @param scoredPoint the scored point retrieved from the vector database
-     * @return an instance of {@link EmbeddingModelResponse} containing the ID and score of the scored point
+     * @param match the match retrieved from the vector store
+     * @return an instance of {@link EmbeddingModelResponse} containing the ID, score and payload of the match
      */
-    public static EmbeddingModelResponse toDTO(Points.ScoredPoint scoredPoint) {
+    public static EmbeddingModelResponse toDTO(VectorMatch match) {
         return new EmbeddingModelResponse(
-                scoredPoint.getId().getNum(),
-                scoredPoint.getScore(),
-                scoredPoint.getPayloadMap().get("content").getStringValue()
+                match.id(),
+                match.score(),
+                match.payload().get("content"),
+                match.payload().get("document_id")
         );
     }
 }
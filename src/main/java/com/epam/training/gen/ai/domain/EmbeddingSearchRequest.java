@@ -0,0 +1,54 @@
+package com.epam.training.gen.ai.domain;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A data transfer object (DTO) representing a search for the closest embeddings.
+ * <p>
+ * Only the text is required; every other field falls back to the configured default when omitted.
+ */
+@Data
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+public class EmbeddingSearchRequest implements Serializable {
+
+    /**
+     * The input text to search similar embeddings for.
+     */
+    private String text;
+
+    /**
+     * The maximum number of matches to return.
+     */
+    private Integer limit;
+
+    /**
+     * The number of best matches to skip, for paging through results.
+     */
+    private Integer offset;
+
+    /**
+     * The minimum similarity score of a returned match.
+     * This field is serialized and deserialized as "score-threshold" in JSON.
+     */
+    @JsonProperty("score-threshold")
+    private Float scoreThreshold;
+
+    /**
+     * The payload fields to return with each match, such as {@code content} and {@code document_id}.
+     * All fields are returned when omitted, and none, leaving only identifiers and scores, when empty.
+     */
+    private List<String> fields;
+}
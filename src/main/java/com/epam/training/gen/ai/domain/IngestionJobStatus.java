@@ -0,0 +1,87 @@
+package com.epam.training.gen.ai.domain;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A data transfer object (DTO) describing the state and progress of an asynchronous ingestion job.
+ */
+@Data
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+public class IngestionJobStatus implements Serializable {
+
+    /**
+     * The lifecycle states of an ingestion job.
+     */
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, SKIPPED, FAILED, CANCELLED
+    }
+
+    /**
+     * The unique identifier of the job, used to poll or cancel it.
+     */
+    @JsonProperty("job-id")
+    private String jobId;
+
+    /**
+     * A short description of what is being ingested, such as the uploaded file name.
+     */
+    private String source;
+
+    /**
+     * The current state of the job.
+     */
+    private State state;
+
+    /**
+     * The number of chunks embedded so far.
+     */
+    @JsonProperty("chunks-embedded")
+    private long chunksEmbedded;
+
+    /**
+     * The number of points upserted into the vector store so far.
+     */
+    @JsonProperty("points-upserted")
+    private long pointsUpserted;
+
+    /**
+     * The number of embedding or upsert batches that failed.
+     */
+    private long failures;
+
+    /**
+     * A human-readable explanation for skipped or failed jobs.
+     */
+    private String message;
+
+    /**
+     * When the job was submitted.
+     */
+    @JsonProperty("submitted-at")
+    private Instant submittedAt;
+
+    /**
+     * When the job started running, or {@code null} while it is queued.
+     */
+    @JsonProperty("started-at")
+    private Instant startedAt;
+
+    /**
+     * When the job reached a final state, or {@code null} while it is active.
+     */
+    @JsonProperty("finished-at")
+    private Instant finishedAt;
+}
@@ -0,0 +1,101 @@
+package com.epam.training.gen.ai.domain;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+
+/**
+ * A data transfer object (DTO) comparing approximate search against exact search on a collection.
+ * <p>
+ * Recall@k is the share of the exact {@code k} nearest neighbours that a search returns, averaged
+ * over the sampled queries. Latencies are averages per query in microseconds.
+ */
+@Data
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+public class RecallReport implements Serializable {
+
+    /**
+     * The name of the measured collection.
+     */
+    private String collection;
+
+    /**
+     * The number of live points in the collection.
+     */
+    private int points;
+
+    /**
+     * The number of neighbours compared per query.
+     */
+    private int k;
+
+    /**
+     * The number of sampled queries.
+     */
+    private int queries;
+
+    /**
+     * The quantization of the collection, {@code none} or {@code int8}.
+     */
+    private String quantization;
+
+    /**
+     * The size of a full-precision vector in bytes.
+     */
+    @JsonProperty("full-precision-bytes-per-vector")
+    private int fullPrecisionBytesPerVector;
+
+    /**
+     * The size of a quantized vector in bytes, or {@code null} without quantization.
+     */
+    @JsonProperty("quantized-bytes-per-vector")
+    private Integer quantizedBytesPerVector;
+
+    /**
+     * The recall@k of the graph search on full-precision vectors.
+     */
+    @JsonProperty("full-precision-recall")
+    private double fullPrecisionRecall;
+
+    /**
+     * The recall@k of the graph search on quantized vectors, before rescoring, or {@code null} without quantization.
+     */
+    @JsonProperty("quantized-recall")
+    private Double quantizedRecall;
+
+    /**
+     * The recall@k of the graph search on quantized vectors after full-precision rescoring, or
+     * {@code null} without quantization.
+     */
+    @JsonProperty("rescored-recall")
+    private Double rescoredRecall;
+
+    /**
+     * The average latency of an exact brute-force search.
+     */
+    @JsonProperty("exact-micros")
+    private double exactMicros;
+
+    /**
+     * The average latency of a graph search on full-precision vectors.
+     */
+    @JsonProperty("full-precision-micros")
+    private double fullPrecisionMicros;
+
+    /**
+     * The average latency of a graph search on quantized vectors including rescoring, or
+     * {@code null} without quantization.
+     */
+    @JsonProperty("rescored-micros")
+    private Double rescoredMicros;
+}
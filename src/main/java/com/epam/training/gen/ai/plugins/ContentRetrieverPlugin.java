@@ -7,8 +7,8 @@ import com.microsoft.semantickernel.semanticfunctions.annotations.KernelFunction
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
 
-import java.util.List;
 import java.util.stream.Collectors;
 
 /**
@@ -33,25 +33,29 @@ public class ContentRetrieverPlugin {
 
     /**
      * Kernel function to retrieve context based on the user's query.
+     * The search runs without blocking, so the function is invoked asynchronously by the kernel.
      *
      * @param userQuestion The query provided by the user to retrieve relevant context.
-     * @return The retrieved context as a string. If no context is found, a default response is returned.
+     * @return A Mono emitting the retrieved context as a string. If no context is found, a default response is returned.
      * In case of an error, an appropriate error message is returned.
      */
-    @DefineKernelFunction(name = "ContentRetriever", description = "Retrieves context based on the user question.")
-    public String retrieveContext(
+    @DefineKernelFunction(name = "ContentRetriever", description = "Retrieves context based on the user question.",
+            returnType = "java.lang.String")
+    public Mono<String> retrieveContext(
             @KernelFunctionParameter(description = "Question from user", name = "userQuestion")
             String userQuestion
     ) {
-        try {
-            List<EmbeddingModelResponse> context = ragService.searchContext(userQuestion);
-            String collect = context.stream().map(EmbeddingModelResponse::getChunk).collect(Collectors.joining());
-            if (collect.isBlank()) {
-                return "I don't have context based on the user query";
-            }
-            return collect;
-        } catch (Exception ex) {
-            return "Sorry, I cannot retrieve context based on the user query";
-        }
+        return ragService.searchContext(userQuestion)
+                .map(context -> {
+                    String collect = context.stream().map(EmbeddingModelResponse::getChunk).collect(Collectors.joining());
+                    if (collect.isBlank()) {
+                        return "I don't have context based on the user query";
+                    }
+                    return collect;
+                })
+                .onErrorResume(ex -> {
+                    log.error("Error retrieving context", ex);
+                    return Mono.just("Sorry, I cannot retrieve context based on the user query");
+                });
     }
 }
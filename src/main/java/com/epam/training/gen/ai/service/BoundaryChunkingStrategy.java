@@ -0,0 +1,144 @@
+package com.epam.training.gen.ai.service;
+
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base class for strategies that cut chunks at a chosen boundary within a window of text.
+ * <p>
+ * The class handles streaming: it keeps only the text that has not been fully chunked yet, cuts a
+ * chunk as soon as more than a chunk's worth of text is available, and emits the remaining tail
+ * when the stream ends. Chunks are {@link TextSpan} views into the current window, trimmed of
+ * surrounding whitespace, so the only copies made are one per incoming segment. Subclasses decide
+ * where a chunk ends and where the next one starts.
+ */
+abstract class BoundaryChunkingStrategy implements ChunkingStrategy {
+
+    @Override
+    public Flux<TextSpan> split(Flux<String> segments, ChunkingSettings settings) {
+        return Flux.defer(() -> {
+            Window window = new Window(settings.chunkSize(), settings.overlap());
+            return segments
+                    .concatMapIterable(window::append)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(window.flush())));
+        });
+    }
+
+    /**
+     * Chooses where a chunk starting at {@code from} ends. The text is guaranteed to extend past
+     * {@code limit}, so implementations may look at the character following the chunk.
+     *
+     * @param text  the window of text
+     * @param from  the start of the chunk
+     * @param limit the largest allowed end, {@code from} plus the chunk size
+     * @return the end of the chunk, exclusive, greater than {@code from} and at most {@code limit}
+     */
+    protected abstract int chunkEnd(String text, int from, int limit);
+
+    /**
+     * Chooses where the chunk after {@code [from, end)} starts.
+     *
+     * @param text    the window of text
+     * @param from    the start of the previous chunk
+     * @param end     the end of the previous chunk
+     * @param overlap the configured overlap
+     * @return the start of the next chunk, greater than {@code from} and at most {@code end}
+     */
+    protected int nextStart(String text, int from, int end, int overlap) {
+        int start = end - overlap;
+        if (start <= from) {
+            return end;
+        }
+        if (Character.isLowSurrogate(text.charAt(start)) && Character.isHighSurrogate(text.charAt(start - 1))) {
+            // Keep the surrogate pair together, in the next chunk unless that would not move forward
+            return start - 1 > from ? start - 1 : start + 1;
+        }
+        return start;
+    }
+
+    /**
+     * Moves a hard cut back by one character if it would split a surrogate pair.
+     *
+     * @param text the window of text
+     * @param from the start of the chunk
+     * @param end  the proposed end of the chunk
+     * @return {@code end}, or {@code end - 1} if that keeps a surrogate pair together
+     */
+    protected static int avoidSplittingSurrogates(String text, int from, int end) {
+        return end - 1 > from && Character.isHighSurrogate(text.charAt(end - 1)) ? end - 1 : end;
+    }
+
+    /**
+     * The chunking state of one subscription.
+     */
+    private final class Window {
+
+        private final int chunkSize;
+        private final int overlap;
+        private String text = "";
+        /**
+         * The end of the text already emitted in a chunk, relative to {@link #text}.
+         */
+        private int covered;
+
+        private Window(int chunkSize, int overlap) {
+            this.chunkSize = chunkSize;
+            this.overlap = overlap;
+        }
+
+        private List<TextSpan> append(String segment) {
+            text = text.isEmpty() ? segment : text.concat(segment);
+            List<TextSpan> chunks = new ArrayList<>();
+            int from = cut(chunks);
+            text = text.substring(from);
+            covered = Math.max(0, covered - from);
+            return chunks;
+        }
+
+        private List<TextSpan> flush() {
+            List<TextSpan> chunks = new ArrayList<>();
+            int from = cut(chunks);
+            // The tail is only worth a chunk if it holds text no previous chunk did.
+            if (hasContent(Math.max(from, covered), text.length())) {
+                addTrimmed(chunks, from, text.length());
+            }
+            text = "";
+            covered = 0;
+            return chunks;
+        }
+
+        private int cut(List<TextSpan> chunks) {
+            int from = 0;
+            while (text.length() - from > chunkSize) {
+                int end = chunkEnd(text, from, from + chunkSize);
+                addTrimmed(chunks, from, end);
+                covered = end;
+                from = nextStart(text, from, end, overlap);
+            }
+            return from;
+        }
+
+        private void addTrimmed(List<TextSpan> chunks, int start, int end) {
+            while (start < end && Character.isWhitespace(text.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+                end--;
+            }
+            if (start < end) {
+                chunks.add(new TextSpan(text, start, end));
+            }
+        }
+
+        private boolean hasContent(int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (!Character.isWhitespace(text.charAt(i))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -3,11 +3,16 @@ package com.epam.training.gen.ai.service;
 import com.microsoft.semantickernel.Kernel;
 import com.microsoft.semantickernel.orchestration.InvocationContext;
 import com.microsoft.semantickernel.services.chatcompletion.ChatCompletionService;
-import com.microsoft.semantickernel.services.chatcompletion.ChatHistory;
 import com.microsoft.semantickernel.services.chatcompletion.ChatMessageContent;
+import com.microsoft.semantickernel.services.chatcompletion.StreamingChatContent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -15,15 +20,24 @@ import java.util.stream.Collectors;
 
 /**
  * Service class for managing chat interactions.
- * This class handles user chat histories, selects the appropriate AI model, and processes chat requests to generate responses.
+ * This class keeps user conversations in the {@link ConversationMemory}, selects the appropriate AI model, and processes chat requests to generate responses.
+ * Answers to questions similar to earlier ones may be served from the {@link SemanticResponseCache}.
+ * <p>
+ * Every question can be answered in one piece or streamed as the model generates it, and either way
+ * the call chain is composed without blocking a thread while the model works. The time from
+ * a question to the first piece of its answer is recorded as the {@code chat.time-to-first-token}
+ * timer, tagged with the model, the {@code blocking} or {@code streaming} mode and whether the
+ * answer came from the cache.
  */
 @Service
 public class ChatService {
 
     private final Kernel kernel;
     private final InvocationContext invocationContext;
-    private final ConcurrentHashMap<String, ChatHistory> userChatHistories = new ConcurrentHashMap<>();
     private final Map<String, ChatCompletionService> chatCompletionServices = new ConcurrentHashMap<>();
+    private final SemanticResponseCache responseCache;
+    private final ConversationMemory conversationMemory;
+    private final MeterRegistry meterRegistry;
 
     /**
      * Constructs a new {@link ChatService} with the specified kernel, invocation context,
@@ -32,14 +46,23 @@ public class ChatService {
      * @param kernel                    the kernel instance used for executing AI models
      * @param invocationContext         the context for executing prompts and chat tasks
      * @param chatCompletionServiceList the list of available chat completion services, each associated with a model
+     * @param responseCache             the cache of answers to earlier questions
+     * @param conversationMemory        the bounded memory of the users' conversations
+     * @param meterRegistry             the registry the time to first token is published to
      */
     @Autowired
     public ChatService(
             Kernel kernel,
             InvocationContext invocationContext,
-            List<ChatCompletionService> chatCompletionServiceList) {
+            List<ChatCompletionService> chatCompletionServiceList,
+            SemanticResponseCache responseCache,
+            ConversationMemory conversationMemory,
+            MeterRegistry meterRegistry) {
         this.kernel = kernel;
         this.invocationContext = invocationContext;
+        this.responseCache = responseCache;
+        this.conversationMemory = conversationMemory;
+        this.meterRegistry = meterRegistry;
 
         for (ChatCompletionService service : chatCompletionServiceList) {
             this.chatCompletionServices.put(service.getModelId(), service);
@@ -48,32 +71,193 @@ public class ChatService {
 
     /**
      * Processes a chat question from a user and generates a response using the specified AI model.
+     * <p>
+     * Only the opening question of a conversation is answered from the response cache, since a
+     * follow-up question depends on the conversation before it.
      *
      * @param userId   the unique identifier of the user
      * @param question the chat question or input provided by the user
      * @param modelId  the identifier of the AI model to be used
-     * @return the AI-generated response to the user's question
+     * @return a {@link Mono} emitting the AI-generated response to the user's question, or failing
+     * with {@link IllegalArgumentException} if the specified model ID is not found
+     */
+    public Mono<String> ask(String userId, String question, String modelId) {
+        return Mono.defer(() -> {
+            ChatCompletionService chatCompletionService = getChatCompletionService(modelId);
+            return answer(modelId, chatCompletionService, userId, question, Mono.just(question),
+                    chatScope(userId, modelId));
+        });
+    }
+
+    /**
+     * Streams the response to a chat question from a user as the specified AI model generates it.
+     * The complete response is recorded in the conversation memory once the stream completes.
+     *
+     * @param userId   the unique identifier of the user
+     * @param question the chat question or input provided by the user
+     * @param modelId  the identifier of the AI model to be used
+     * @return a {@link Flux} of response text deltas
      * @throws IllegalArgumentException if the specified model ID is not found
+     * @see #ask(String, String, String)
      */
-    public String ask(String userId, String question, String modelId) {
-        // Retrieve the chat completion service for the given model ID
-        ChatCompletionService chatCompletionService = chatCompletionServices.get(modelId);
-        if (chatCompletionService == null) {
-            throw new IllegalArgumentException("Model not found: " + modelId);
+    public Flux<String> askStreaming(String userId, String question, String modelId) {
+        ChatCompletionService chatCompletionService = getChatCompletionService(modelId);
+        return Flux.defer(() -> answerStreaming(modelId, chatCompletionService, userId, question,
+                Mono.just(question), chatScope(userId, modelId)));
+    }
+
+    /**
+     * Answers a question using context retrieved from a collection, generating a response with the
+     * specified AI model.
+     * <p>
+     * The answer may come from the response cache, scoped to the model and the collection, in which
+     * case no context is retrieved at all: the prompt is only subscribed to when the model is called.
+     *
+     * @param userId     the unique identifier of the user
+     * @param question   the question provided by the user
+     * @param modelId    the identifier of the AI model to be used
+     * @param collection the collection the context is retrieved from
+     * @param prompt     builds the prompt combining the question with the retrieved context
+     * @return a {@link Mono} emitting the AI-generated response to the user's question, or failing
+     * with {@link IllegalArgumentException} if the specified model ID is not found
+     */
+    public Mono<String> askAboutContext(String userId, String question, String modelId, String collection,
+                                        Mono<String> prompt) {
+        return Mono.defer(() -> answer(modelId, getChatCompletionService(modelId), userId, question,
+                prompt, SemanticResponseCache.Scope.context(modelId, collection)));
+    }
+
+    /**
+     * Streams the answer to a question using context retrieved from a collection as the specified AI
+     * model generates it. The complete answer is recorded in the conversation memory once the stream completes.
+     *
+     * @param userId     the unique identifier of the user
+     * @param question   the question provided by the user
+     * @param modelId    the identifier of the AI model to be used
+     * @param collection the collection the context is retrieved from
+     * @param prompt     builds the prompt combining the question with the retrieved context
+     * @return a {@link Flux} of answer text deltas
+     * @throws IllegalArgumentException if the specified model ID is not found
+     * @see #askAboutContext(String, String, String, String, Mono)
+     */
+    public Flux<String> askAboutContextStreaming(String userId, String question, String modelId, String collection,
+                                                 Mono<String> prompt) {
+        ChatCompletionService chatCompletionService = getChatCompletionService(modelId);
+        return answerStreaming(modelId, chatCompletionService, userId, question, prompt,
+                SemanticResponseCache.Scope.context(modelId, collection));
+    }
+
+    /**
+     * Answers from the response cache if possible, and otherwise sends the prompt to the model and
+     * caches the reply. Either way, the exchange is recorded in the conversation memory.
+     *
+     * @param scope the response cache scope, or {@code null} to bypass the cache
+     */
+    private Mono<String> answer(String modelId, ChatCompletionService chatCompletionService, String userId,
+                                String question, Mono<String> prompt, SemanticResponseCache.Scope scope) {
+        long started = System.nanoTime();
+        return findCached(chatCompletionService, userId, question, scope)
+                .doOnNext(cached -> recordTimeToFirstToken(modelId, "blocking", true, started))
+                .switchIfEmpty(prompt
+                        .flatMap(text -> chatCompletionService
+                                .getChatMessageContentsAsync(conversationMemory.history(userId, text), kernel,
+                                        invocationContext)
+                                .map(messages -> messages.stream()
+                                        .map(ChatMessageContent::getContent)
+                                        .collect(Collectors.joining()))
+                                .doOnNext(reply -> {
+                                    recordTimeToFirstToken(modelId, "blocking", false, started);
+                                    conversationMemory.record(userId, question, reply, chatCompletionService);
+                                }))
+                        .flatMap(reply -> scope == null
+                                ? Mono.just(reply)
+                                : responseCache.put(scope, question, reply).thenReturn(reply)));
+    }
+
+    /**
+     * Streaming counterpart of {@link #answer}. A cached answer is emitted as a single delta.
+     * <p>
+     * The reply is recorded in the conversation memory when the stream completes, or as far as it got
+     * if the subscriber cancels, so that the memory matches what the user saw. Filling the cache does
+     * not hold up the end of the stream.
+     *
+     * @param scope the response cache scope, or {@code null} to bypass the cache
+     */
+    private Flux<String> answerStreaming(String modelId, ChatCompletionService chatCompletionService,
+                                         String userId, String question, Mono<String> prompt,
+                                         SemanticResponseCache.Scope scope) {
+        return Flux.defer(() -> {
+            long started = System.nanoTime();
+            StringBuilder reply = new StringBuilder();
+            Flux<String> generated = prompt
+                    .flatMapMany(text -> chatCompletionService
+                            .getStreamingChatMessageContentsAsync(conversationMemory.history(userId, text), kernel,
+                                    invocationContext)
+                            .mapNotNull(StreamingChatContent::getContent)
+                            .filter(delta -> !delta.isEmpty())
+                            .doOnNext(delta -> {
+                                if (reply.isEmpty()) {
+                                    recordTimeToFirstToken(modelId, "streaming", false, started);
+                                }
+                                reply.append(delta);
+                            })
+                            .doOnComplete(() -> {
+                                conversationMemory.record(userId, question, reply.toString(), chatCompletionService);
+                                if (scope != null) {
+                                    responseCache.put(scope, question, reply.toString()).subscribe();
+                                }
+                            })
+                            .doOnCancel(() -> {
+                                if (!reply.isEmpty()) {
+                                    conversationMemory.record(userId, question, reply.toString(), chatCompletionService);
+                                }
+                            }));
+            return findCached(chatCompletionService, userId, question, scope)
+                    .doOnNext(cached -> recordTimeToFirstToken(modelId, "streaming", true, started))
+                    .flux()
+                    .switchIfEmpty(generated);
+        });
+    }
+
+    /**
+     * Looks up a cached answer and, on a hit, records the exchange in the conversation memory.
+     *
+     * @param scope the response cache scope, or {@code null} to bypass the cache
+     * @return a {@link Mono} emitting the cached answer, or completing empty on a miss
+     */
+    private Mono<String> findCached(ChatCompletionService chatCompletionService, String userId, String question,
+                                    SemanticResponseCache.Scope scope) {
+        if (scope == null) {
+            return Mono.empty();
         }
+        return responseCache.find(scope, question)
+                .doOnNext(answer -> conversationMemory.record(userId, question, answer, chatCompletionService));
+    }
 
-        // Retrieve or create a new chat history for the user
-        ChatHistory chatHistory =
-                userChatHistories.computeIfAbsent(userId, id -> new ChatHistory("You are a friendly helper."));
-        chatHistory.addUserMessage(question);
+    /**
+     * Returns the response cache scope of a plain chat question: only opening questions are cached.
+     *
+     * @return the scope, or {@code null} if the question follows earlier ones
+     */
+    private SemanticResponseCache.Scope chatScope(String userId, String modelId) {
+        return conversationMemory.isNew(userId) ? SemanticResponseCache.Scope.chat(modelId) : null;
+    }
 
-        String reply = chatCompletionService.getChatMessageContentsAsync(chatHistory, kernel, invocationContext)
-                .block()
-                .stream()
-                .map(ChatMessageContent::getContent)
-                .collect(Collectors.joining());
+    private void recordTimeToFirstToken(String modelId, String mode, boolean cached, long started) {
+        Timer.builder("chat.time-to-first-token")
+                .description("Time from a chat question to the first piece of its answer")
+                .tag("model", modelId)
+                .tag("mode", mode)
+                .tag("cached", Boolean.toString(cached))
+                .register(meterRegistry)
+                .record(Duration.ofNanos(System.nanoTime() - started));
+    }
 
-        chatHistory.addAssistantMessage(reply);
-        return reply;
+    private ChatCompletionService getChatCompletionService(String modelId) {
+        ChatCompletionService chatCompletionService = chatCompletionServices.get(modelId);
+        if (chatCompletionService == null) {
+            throw new IllegalArgumentException("Model not found: " + modelId);
+        }
+        return chatCompletionService;
     }
 }
@@ -0,0 +1,31 @@
+package com.epam.training.gen.ai.service;
+
+/**
+ * The chunking configuration applied to one collection.
+ *
+ * @param strategy  the name of the {@link ChunkingStrategy} to use
+ * @param chunkSize the maximum number of characters in a chunk
+ * @param overlap   the number of characters repeated from the end of one chunk at the start of the next
+ */
+public record ChunkingSettings(String strategy, int chunkSize, int overlap) {
+
+    /**
+     * Validates the settings. An overlap as large as the chunk size would never let the chunker
+     * move forward, so it is rejected here rather than discovered as a hang during ingestion.
+     *
+     * @throws IllegalArgumentException if the chunk size is not positive or the overlap is not
+     *                                  smaller than the chunk size
+     */
+    public ChunkingSettings {
+        if (strategy == null || strategy.isBlank()) {
+            throw new IllegalArgumentException("Chunking strategy must be set");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive, got " + chunkSize);
+        }
+        if (overlap < 0 || overlap >= chunkSize) {
+            throw new IllegalArgumentException("Chunk overlap must be at least 0 and smaller than the chunk size "
+                    + chunkSize + ", got " + overlap);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.epam.training.gen.ai.service;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * A way of splitting document text into chunks for embedding.
+ * <p>
+ * Implementations are Spring beans and are selected by {@link #getName()} through the
+ * {@code chunking.strategy} property, optionally overridden per collection.
+ */
+public interface ChunkingStrategy {
+
+    /**
+     * Returns the name the strategy is configured by.
+     *
+     * @return the strategy name
+     */
+    String getName();
+
+    /**
+     * Splits a stream of text segments into chunks. Segments are consumed one at a time, so a
+     * document can be chunked while it is still being read, and chunks may span segment boundaries.
+     *
+     * @param segments consecutive pieces of the document text, in document order
+     * @param settings the chunk size and overlap to apply
+     * @return a {@link Flux} of chunks, in document order
+     */
+    Flux<TextSpan> split(Flux<String> segments, ChunkingSettings settings);
+}
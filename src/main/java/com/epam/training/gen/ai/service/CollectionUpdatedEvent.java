@@ -0,0 +1,10 @@
+package com.epam.training.gen.ai.service;
+
+/**
+ * Application event published after new points were stored in a vector store collection, so that
+ * anything derived from the collection content can be invalidated.
+ *
+ * @param collection the name of the updated collection
+ */
+public record CollectionUpdatedEvent(String collection) {
+}
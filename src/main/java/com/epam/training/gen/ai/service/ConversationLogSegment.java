@@ -0,0 +1,174 @@
+package com.epam.training.gen.ai.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * One fixed-capacity, memory-mapped file of the {@link LogConversationStore} log.
+ * <p>
+ * Records are appended back to back as {@code [length:int][crc32:int][body]}. The file is sized
+ * to its capacity when created, so the unwritten tail reads as zeros, and replay stops at the
+ * first zero length or checksum mismatch; a record torn by a crash is therefore discarded and
+ * overwritten by the next append. Reads may run concurrently with each other, but appends must be
+ * serialised against all other calls by the caller.
+ */
+final class ConversationLogSegment implements Closeable {
+
+    static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    private final int sequence;
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+    private int writePosition;
+    private long liveBytes;
+
+    /**
+     * Opens a segment, creating it with the given capacity if it does not exist.
+     *
+     * @param sequence the position of the segment in the log
+     * @param file     the segment file
+     * @param capacity the size of a new segment file, in bytes
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    ConversationLogSegment(int sequence, Path file, int capacity) throws IOException {
+        this.sequence = sequence;
+        this.file = file;
+        this.channel = FileChannel.open(file, CREATE, READ, WRITE);
+        long size = channel.size();
+        this.mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size == 0 ? capacity : Math.min(size, Integer.MAX_VALUE));
+    }
+
+    int sequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the number of bytes written, valid records only.
+     *
+     * @return the write position
+     */
+    int size() {
+        return writePosition;
+    }
+
+    /**
+     * Returns the number of bytes taken up by records that are still the latest of their user.
+     * Maintained by the caller.
+     *
+     * @return the live bytes
+     */
+    long liveBytes() {
+        return liveBytes;
+    }
+
+    void addLiveBytes(long delta) {
+        liveBytes += delta;
+    }
+
+    /**
+     * Reads every valid record, in write order, and moves the write position past the last one.
+     *
+     * @param visitor receives the offset and the body of every record
+     */
+    void replay(RecordVisitor visitor) {
+        int position = 0;
+        CRC32 crc = new CRC32();
+        while (position + HEADER_BYTES <= mapped.capacity()) {
+            int length = mapped.getInt(position);
+            if (length < 1 || (long) position + HEADER_BYTES + length > mapped.capacity()) {
+                break;
+            }
+            ByteBuffer body = mapped.slice(position + HEADER_BYTES, length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != mapped.getInt(position + Integer.BYTES)) {
+                break;
+            }
+            visitor.visit(position, body);
+            position += HEADER_BYTES + length;
+        }
+        writePosition = position;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param body the record body
+     * @return the offset of the record, or {@code -1} if the segment has no room left for it
+     */
+    int append(ByteBuffer body) {
+        int length = body.remaining();
+        if ((long) writePosition + HEADER_BYTES + length > mapped.capacity()) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        int offset = writePosition;
+        mapped.put(offset + HEADER_BYTES, body, body.position(), length);
+        mapped.putInt(offset + Integer.BYTES, (int) crc.getValue());
+        // The length goes last, so that a record is not visible to replay before it is complete
+        mapped.putInt(offset, length);
+        writePosition = offset + HEADER_BYTES + length;
+        return offset;
+    }
+
+    /**
+     * Returns a view of the body of a record.
+     *
+     * @param offset the offset returned by {@link #append} or passed to the replay visitor
+     * @return a read-only view of the record body
+     */
+    ByteBuffer read(int offset) {
+        int length = mapped.getInt(offset);
+        return mapped.slice(offset + HEADER_BYTES, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * Writes the mapped changes through to the file.
+     */
+    void force() {
+        mapped.force();
+    }
+
+    /**
+     * Closes and deletes the segment file. The mapping itself is released once it is garbage collected.
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * Receives the records of a segment during replay.
+     */
+    @FunctionalInterface
+    interface RecordVisitor {
+
+        /**
+         * Visits one record.
+         *
+         * @param offset the offset of the record in the segment
+         * @param body   a view of the record body
+         */
+        void visit(int offset, ByteBuffer body);
+    }
+}
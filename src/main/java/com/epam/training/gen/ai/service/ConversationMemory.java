@@ -0,0 +1,493 @@
+package com.epam.training.gen.ai.service;
+
+import com.microsoft.semantickernel.Kernel;
+import com.microsoft.semantickernel.orchestration.InvocationContext;
+import com.microsoft.semantickernel.services.chatcompletion.ChatCompletionService;
+import com.microsoft.semantickernel.services.chatcompletion.ChatHistory;
+import com.microsoft.semantickernel.services.chatcompletion.ChatMessageContent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded memory of the chat conversations of all users.
+ * <p>
+ * Every question and answer of a user is kept as a turn, and the chat history sent to the model
+ * with a new question is rebuilt from the most recent turns that fit into
+ * {@code chat.memory.max-tokens}. A turn holds the question as asked, not the prompt built around
+ * it, so retrieved context is only sent with the question it was retrieved for, and a turn that
+ * alone exceeds the budget is truncated to fit. Older turns are dropped, or, with {@code chat.memory.summary.enabled},
+ * compacted by the model into a running summary of at most {@code chat.memory.summary.max-tokens}
+ * that is sent ahead of the turns. Tokens are estimated at about four characters each.
+ * <p>
+ * Conversations idle for longer than {@code chat.memory.idle-ttl} are evicted, and once
+ * {@code chat.memory.max-sessions} conversations are retained, the least recently used one is
+ * evicted to make room. The number of retained conversations and an estimate of the heap their
+ * text takes up are published as the {@code chat.memory.sessions} and {@code chat.memory.retained-bytes} gauges.
+ * <p>
+ * With a {@link ConversationStore} configured, every change is written through to it, and a
+ * conversation missing from heap is loaded from the store on its user's next question. Evictions
+ * then only free heap, and conversations survive restarts. Changes are written by a dedicated
+ * thread, so that the reactive callbacks recording answers never wait on the disk.
+ */
+@Slf4j
+@Component
+public class ConversationMemory {
+
+    private static final String SYSTEM_PROMPT = "You are a friendly helper.";
+    private static final Duration MAX_SWEEP_INTERVAL = Duration.ofMinutes(1);
+
+    private final int maxTokens;
+    private final boolean summaryEnabled;
+    private final int summaryMaxTokens;
+    private final Duration summaryTimeout;
+    private final long idleTtlNanos;
+    private final long sweepIntervalNanos;
+    private final Kernel kernel;
+    private final InvocationContext invocationContext;
+    private final ConversationStore store;
+    private final ExecutorService persistence;
+    private final Map<String, Conversation> conversations;
+    private long lastSweep = System.nanoTime();
+
+    /**
+     * Constructs a new {@code ConversationMemory}.
+     *
+     * @param maxTokens         the token budget of the summary and turns sent with a question
+     * @param summaryEnabled    whether turns leaving the budget are compacted into a summary instead of dropped
+     * @param summaryMaxTokens  the token budget of the summary
+     * @param summaryTimeout    how long the model may take to write a summary before its turns are dropped
+     * @param idleTtl           how long a conversation is retained after its last question
+     * @param maxSessions       the maximum number of retained conversations
+     * @param kernel            the kernel passed to the model writing summaries
+     * @param invocationContext the execution settings of the model writing summaries, shared with chat answers
+     * @param store             the store conversations are written through to, if one is configured
+     * @param meterRegistry     the registry the memory gauges are published to
+     */
+    public ConversationMemory(
+            @Value("${chat.memory.max-tokens}") int maxTokens,
+            @Value("${chat.memory.summary.enabled}") boolean summaryEnabled,
+            @Value("${chat.memory.summary.max-tokens}") int summaryMaxTokens,
+            @Value("${chat.memory.summary.timeout}") Duration summaryTimeout,
+            @Value("${chat.memory.idle-ttl}") Duration idleTtl,
+            @Value("${chat.memory.max-sessions}") int maxSessions,
+            Kernel kernel,
+            InvocationContext invocationContext,
+            Optional<ConversationStore> store,
+            MeterRegistry meterRegistry
+    ) {
+        if (maxTokens < 1 || summaryMaxTokens < 1 || summaryMaxTokens >= maxTokens) {
+            throw new IllegalArgumentException("Chat memory token budgets must be positive, with the summary budget below the total");
+        }
+        if (maxSessions < 1 || idleTtl.isNegative() || idleTtl.isZero()) {
+            throw new IllegalArgumentException("Chat memory session cap and idle time to live must be positive");
+        }
+        if (summaryTimeout.isNegative() || summaryTimeout.isZero()) {
+            throw new IllegalArgumentException("Chat memory summary timeout must be positive");
+        }
+        this.maxTokens = maxTokens;
+        this.summaryEnabled = summaryEnabled;
+        this.summaryMaxTokens = summaryMaxTokens;
+        this.summaryTimeout = summaryTimeout;
+        this.idleTtlNanos = idleTtl.toNanos();
+        this.sweepIntervalNanos = Math.min(idleTtlNanos, MAX_SWEEP_INTERVAL.toNanos());
+        this.kernel = kernel;
+        this.invocationContext = invocationContext;
+        this.store = store.orElse(null);
+        this.persistence = this.store == null ? null
+                : Executors.newSingleThreadExecutor(new CustomizableThreadFactory("conversation-persistence-"));
+        this.conversations = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Conversation> eldest) {
+                return size() > maxSessions;
+            }
+        };
+
+        Gauge.builder("chat.memory.sessions", this, ConversationMemory::sessions)
+                .description("Number of retained chat conversations")
+                .register(meterRegistry);
+        Gauge.builder("chat.memory.retained-bytes", this, ConversationMemory::retainedBytes)
+                .description("Estimated heap taken up by the text of retained chat conversations")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Builds the chat history to send with a new question of a user: the system prompt, the
+     * summary of earlier turns if any, the most recent turns within the token budget and the question.
+     *
+     * @param userId the unique identifier of the user
+     * @param prompt the new question, or the prompt built around it
+     * @return a new chat history, owned by the caller
+     */
+    public ChatHistory history(String userId, String prompt) {
+        Conversation conversation = conversation(userId);
+        ChatHistory history = new ChatHistory(SYSTEM_PROMPT);
+        synchronized (conversation) {
+            if (conversation.summary != null) {
+                history.addSystemMessage("Summary of the earlier conversation: " + conversation.summary);
+            }
+            for (Turn turn : conversation.turns) {
+                history.addUserMessage(turn.prompt());
+                history.addAssistantMessage(turn.reply());
+            }
+        }
+        return history.addUserMessage(prompt);
+    }
+
+    /**
+     * Returns whether a user has no earlier turns to refer to, so that a question opens a new conversation.
+     *
+     * @param userId the unique identifier of the user
+     * @return {@code true} if the conversation of the user is still empty
+     */
+    public boolean isNew(String userId) {
+        Conversation conversation = conversation(userId);
+        synchronized (conversation) {
+            return conversation.turns.isEmpty() && conversation.summary == null && !conversation.summarizing;
+        }
+    }
+
+    /**
+     * Appends a question and its answer to the conversation of a user, then moves the oldest turns
+     * out of the token budget. With summaries enabled, they are compacted into the summary by the
+     * given model in the background; a failed summary is logged and those turns are dropped. The
+     * conversation is then saved to the store, if any.
+     *
+     * @param userId the unique identifier of the user
+     * @param prompt the question as the user asked it, without any retrieved context
+     * @param reply  the answer
+     * @param model  the model that answered, which also writes the summary
+     */
+    public void record(String userId, String prompt, String reply, ChatCompletionService model) {
+        Conversation conversation = conversation(userId);
+        boolean startSummary;
+        Snapshot snapshot;
+        synchronized (conversation) {
+            int turnBudget = maxTokens - (conversation.summary == null ? 0 : estimateTokens(conversation.summary));
+            conversation.turns.addLast(fit(prompt, reply, turnBudget));
+            conversation.turnTokens += conversation.turns.getLast().tokens();
+            // The latest turn is always kept, and fits the budget on its own
+            while (conversation.turns.size() > 1 && conversation.turnTokens > turnBudget) {
+                Turn oldest = conversation.turns.removeFirst();
+                conversation.turnTokens -= oldest.tokens();
+                if (summaryEnabled) {
+                    conversation.unsummarized.add(oldest);
+                }
+            }
+            startSummary = !conversation.unsummarized.isEmpty() && !conversation.summarizing;
+            conversation.summarizing |= startSummary;
+            snapshot = snapshot(conversation);
+        }
+        persist(userId, conversation, snapshot);
+        if (startSummary) {
+            summarize(userId, conversation, model);
+        }
+    }
+
+    /**
+     * Compacts the pending turns of a conversation into its summary, and again while more turns are
+     * pending once it is done. A summary not written within {@code chat.memory.summary.timeout}
+     * fails like any other, so that a hung model call never leaves the conversation summarizing for good.
+     */
+    private void summarize(String userId, Conversation conversation, ChatCompletionService model) {
+        List<Turn> turns;
+        String summary;
+        synchronized (conversation) {
+            turns = List.copyOf(conversation.unsummarized);
+            conversation.unsummarized.clear();
+            summary = conversation.summary;
+        }
+        model.getChatMessageContentsAsync(summaryRequest(summary, turns), kernel, invocationContext)
+                .timeout(summaryTimeout)
+                .map(messages -> messages.stream()
+                        .map(ChatMessageContent::getContent)
+                        .collect(Collectors.joining()))
+                .filter(text -> !text.isBlank())
+                .subscribe(
+                        text -> {
+                            Snapshot snapshot;
+                            synchronized (conversation) {
+                                conversation.summary = truncate(text.strip(), summaryMaxTokens);
+                                snapshot = snapshot(conversation);
+                            }
+                            persist(userId, conversation, snapshot);
+                        },
+                        error -> {
+                            log.warn("Failed to summarize {} chat turns of user {}, dropping them", turns.size(), userId, error);
+                            summarized(userId, conversation, model);
+                        },
+                        () -> summarized(userId, conversation, model));
+    }
+
+    private void summarized(String userId, Conversation conversation, ChatCompletionService model) {
+        boolean more;
+        synchronized (conversation) {
+            more = !conversation.unsummarized.isEmpty();
+            conversation.summarizing = more;
+        }
+        if (more) {
+            summarize(userId, conversation, model);
+        }
+    }
+
+    private ChatHistory summaryRequest(String summary, List<Turn> turns) {
+        StringBuilder transcript = new StringBuilder();
+        if (summary != null) {
+            transcript.append("Summary so far: ").append(summary).append("\n\n");
+        }
+        for (Turn turn : turns) {
+            transcript.append("User: ").append(turn.prompt()).append('\n')
+                    .append("Assistant: ").append(turn.reply()).append('\n');
+        }
+        return new ChatHistory(String.format(
+                "Update the summary of a conversation with the turns below. Keep the facts, names and " +
+                        "decisions the user may refer to later, and stay under %d words. " +
+                        "Reply with the summary only.", summaryMaxTokens * 3 / 4))
+                .addUserMessage(transcript.toString());
+    }
+
+    /**
+     * Returns the conversation of a user, loading it from the store or creating it if it is not
+     * retained in heap, and evicting idle conversations at most once per sweep interval.
+     */
+    private Conversation conversation(String userId) {
+        Conversation conversation = retained(userId);
+        if (conversation != null) {
+            return conversation;
+        }
+        // Loaded outside the lock; if another request loads the same conversation meanwhile, the first one wins
+        Conversation loaded = restore(userId);
+        synchronized (conversations) {
+            conversation = conversations.get(userId);
+            if (conversation == null || System.nanoTime() - conversation.lastAccess > idleTtlNanos) {
+                conversation = loaded;
+                conversations.put(userId, conversation);
+            }
+            conversation.lastAccess = System.nanoTime();
+            return conversation;
+        }
+    }
+
+    private Conversation retained(String userId) {
+        long now = System.nanoTime();
+        synchronized (conversations) {
+            if (now - lastSweep >= sweepIntervalNanos) {
+                evictIdle(now);
+                lastSweep = now;
+            }
+            Conversation conversation = conversations.get(userId);
+            if (conversation == null || now - conversation.lastAccess > idleTtlNanos) {
+                return null;
+            }
+            conversation.lastAccess = now;
+            return conversation;
+        }
+    }
+
+    private Conversation restore(String userId) {
+        Conversation conversation = new Conversation();
+        if (store == null) {
+            return conversation;
+        }
+        ConversationStore.StoredConversation stored;
+        try {
+            stored = store.load(userId);
+        } catch (RuntimeException e) {
+            log.warn("Failed to load the chat conversation of user {}, starting a new one", userId, e);
+            return conversation;
+        }
+        if (stored != null) {
+            conversation.summary = stored.summary();
+            for (ConversationStore.StoredTurn turn : stored.turns()) {
+                Turn restored = new Turn(turn.prompt(), turn.reply(),
+                        estimateTokens(turn.prompt()) + estimateTokens(turn.reply()));
+                conversation.turns.addLast(restored);
+                conversation.turnTokens += restored.tokens();
+            }
+        }
+        return conversation;
+    }
+
+    /**
+     * Captures the state of a conversation to be saved, numbered after every earlier capture. Must
+     * be called while holding the conversation's monitor; returns {@code null} if there is no store.
+     */
+    private Snapshot snapshot(Conversation conversation) {
+        if (store == null) {
+            return null;
+        }
+        List<ConversationStore.StoredTurn> turns = new ArrayList<>(conversation.turns.size());
+        for (Turn turn : conversation.turns) {
+            turns.add(new ConversationStore.StoredTurn(turn.prompt(), turn.reply()));
+        }
+        return new Snapshot(++conversation.version, new ConversationStore.StoredConversation(conversation.summary, turns));
+    }
+
+    /**
+     * Hands a snapshot of a conversation to the persistence thread, which saves it to the store.
+     * Called after releasing the conversation's monitor. Snapshots can be handed over out of order,
+     * so one older than the last saved snapshot of the same conversation is dropped, and a late save
+     * never overwrites newer state. A failure is logged only, so that it never fails a chat request.
+     */
+    private void persist(String userId, Conversation conversation, Snapshot snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            persistence.execute(() -> {
+                // Only the persistence thread reads or writes the saved version
+                if (snapshot.version() <= conversation.savedVersion) {
+                    return;
+                }
+                try {
+                    store.save(userId, snapshot.state());
+                    conversation.savedVersion = snapshot.version();
+                } catch (RuntimeException e) {
+                    log.warn("Failed to save the chat conversation of user {}", userId, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Dropped a change to the chat conversation of user {}, the memory is shutting down", userId);
+        }
+    }
+
+    /**
+     * Stops the persistence thread once the changes already handed to it are saved.
+     *
+     * @throws InterruptedException if interrupted while waiting for the pending saves
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (persistence == null) {
+            return;
+        }
+        persistence.shutdown();
+        if (!persistence.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Chat conversations still pending after 10 seconds were not saved");
+            persistence.shutdownNow();
+        }
+    }
+
+    private void evictIdle(long now) {
+        int evicted = 0;
+        // Access order puts the longest idle conversations first
+        for (Iterator<Conversation> it = conversations.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().lastAccess <= idleTtlNanos) {
+                break;
+            }
+            it.remove();
+            evicted++;
+        }
+        if (evicted > 0) {
+            log.debug("Evicted {} idle chat conversations", evicted);
+        }
+    }
+
+    private int sessions() {
+        synchronized (conversations) {
+            return conversations.size();
+        }
+    }
+
+    private long retainedBytes() {
+        List<Conversation> retained;
+        synchronized (conversations) {
+            retained = new ArrayList<>(conversations.values());
+        }
+        long chars = 0;
+        for (Conversation conversation : retained) {
+            synchronized (conversation) {
+                chars += conversation.summary == null ? 0 : conversation.summary.length();
+                for (Turn turn : conversation.turns) {
+                    chars += turn.prompt().length() + turn.reply().length();
+                }
+                for (Turn turn : conversation.unsummarized) {
+                    chars += turn.prompt().length() + turn.reply().length();
+                }
+            }
+        }
+        return chars * Character.BYTES;
+    }
+
+    /**
+     * Roughly estimates the number of tokens in a text, at about four characters per token.
+     *
+     * @param text the text to measure
+     * @return the estimated token count
+     */
+    private static int estimateTokens(String text) {
+        return (text.length() + 3) / 4;
+    }
+
+    /**
+     * Builds a turn, truncating the question to at most half of the budget and the answer to the
+     * rest if together they exceed it.
+     */
+    private static Turn fit(String prompt, String reply, int budget) {
+        if (estimateTokens(prompt) + estimateTokens(reply) > budget) {
+            prompt = truncate(prompt, Math.min(estimateTokens(prompt), budget / 2));
+            reply = truncate(reply, budget - estimateTokens(prompt));
+        }
+        return new Turn(prompt, reply, estimateTokens(prompt) + estimateTokens(reply));
+    }
+
+    private static String truncate(String text, int tokens) {
+        int maxChars = tokens * 4;
+        return text.length() <= maxChars ? text : text.substring(0, maxChars);
+    }
+
+    /**
+     * The retained state of one user's conversation, guarded by its own monitor. Only the saved
+     * version is confined to the persistence thread instead.
+     */
+    private static final class Conversation {
+
+        private final Deque<Turn> turns = new ArrayDeque<>();
+        private final List<Turn> unsummarized = new ArrayList<>();
+        private int turnTokens;
+        private String summary;
+        private boolean summarizing;
+        private long lastAccess;
+        private long version;
+        private long savedVersion;
+    }
+
+    /**
+     * The state of a conversation at one point, to be saved to the store.
+     *
+     * @param version the number of the snapshot among those of the same conversation
+     * @param state   the conversation to save
+     */
+    private record Snapshot(long version, ConversationStore.StoredConversation state) {
+    }
+
+    /**
+     * A question and its answer.
+     *
+     * @param prompt the question as the user asked it
+     * @param reply  the answer
+     * @param tokens the estimated tokens of both
+     */
+    private record Turn(String prompt, String reply, int tokens) {
+    }
+}
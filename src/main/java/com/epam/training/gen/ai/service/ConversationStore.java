@@ -0,0 +1,53 @@
+package com.epam.training.gen.ai.service;
+
+import java.util.List;
+
+/**
+ * Durable storage of chat conversations behind the {@link ConversationMemory}.
+ * <p>
+ * The memory keeps recently active conversations in heap and writes every change through to the
+ * store; a conversation that is not in heap, after an idle eviction or a restart, is loaded from
+ * the store on its user's next question. The implementation is selected with the
+ * {@code chat.memory.store.type} property; with {@code none}, conversations live in heap only.
+ */
+public interface ConversationStore {
+
+    /**
+     * Loads the latest saved state of a user's conversation.
+     *
+     * @param userId the unique identifier of the user
+     * @return the conversation, or {@code null} if none is stored or it is past its retention
+     */
+    StoredConversation load(String userId);
+
+    /**
+     * Saves the state of a user's conversation, replacing the previously saved state.
+     *
+     * @param userId       the unique identifier of the user
+     * @param conversation the conversation to save
+     * @throws IllegalArgumentException if the conversation is too large to be stored
+     */
+    void save(String userId, StoredConversation conversation);
+
+    /**
+     * The saved state of a conversation.
+     *
+     * @param summary the running summary of earlier turns, or {@code null} if there is none
+     * @param turns   the retained turns, oldest first
+     */
+    record StoredConversation(String summary, List<StoredTurn> turns) {
+
+        public StoredConversation {
+            turns = List.copyOf(turns);
+        }
+    }
+
+    /**
+     * A question and its answer.
+     *
+     * @param prompt the question as the user asked it
+     * @param reply  the answer
+     */
+    record StoredTurn(String prompt, String reply) {
+    }
+}
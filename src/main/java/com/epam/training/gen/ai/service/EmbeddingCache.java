@@ -0,0 +1,303 @@
+package com.epam.training.gen.ai.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Two-tier cache of embedding vectors keyed by embedding model and the SHA-256 of the embedded text.
+ * <p>
+ * The first tier is a size-bounded, in-heap LRU map. The second tier is persistent: vectors are
+ * appended as raw float32 values to memory-mapped vector files, one per dimension, and an
+ * append-only index file maps every key to its vector slot so the cache survives restarts without
+ * re-embedding anything.
+ */
+@Slf4j
+@Component
+public class EmbeddingCache {
+
+    private final Map<String, float[]> memoryTier;
+    private final PersistentTier persistentTier;
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs a new {@code EmbeddingCache}.
+     *
+     * @param maxEntries    the maximum number of vectors kept in the in-heap tier
+     * @param persistent    whether the on-disk tier is enabled
+     * @param directory     the directory holding the on-disk tier files
+     * @param meterRegistry the registry the hit and miss counters are published to
+     * @throws IOException if the on-disk tier cannot be opened
+     */
+    public EmbeddingCache(
+            @Value("${embedding.cache.max-entries}") int maxEntries,
+            @Value("${embedding.cache.persistent}") boolean persistent,
+            @Value("${embedding.cache.directory}") String directory,
+            MeterRegistry meterRegistry
+    ) throws IOException {
+        this.memoryTier = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.persistentTier = persistent ? new PersistentTier(Paths.get(directory)) : null;
+
+        registerCounter(meterRegistry, "memory-hit", memoryHits);
+        registerCounter(meterRegistry, "disk-hit", diskHits);
+        registerCounter(meterRegistry, "miss", misses);
+    }
+
+    /**
+     * Looks up the embedding of a text, checking the in-heap tier first and the on-disk tier second.
+     * Vectors found on disk are promoted to the in-heap tier.
+     *
+     * @param model the embedding model that produced the vector
+     * @param text  the embedded text
+     * @return the cached vector, which is shared and must not be modified, or {@code null} if neither tier holds it
+     */
+    public float[] get(String model, String text) {
+        String key = key(model, text);
+        float[] vector;
+        synchronized (memoryTier) {
+            vector = memoryTier.get(key);
+        }
+        if (vector != null) {
+            memoryHits.incrementAndGet();
+            return vector;
+        }
+        if (persistentTier != null) {
+            vector = persistentTier.read(key);
+            if (vector != null) {
+                diskHits.incrementAndGet();
+                synchronized (memoryTier) {
+                    memoryTier.put(key, vector);
+                }
+                return vector;
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the embedding of a text in both tiers.
+     *
+     * @param model  the embedding model that produced the vector
+     * @param text   the embedded text
+     * @param vector the embedding vector, which must not be modified afterwards
+     */
+    public void put(String model, String text, float[] vector) {
+        String key = key(model, text);
+        synchronized (memoryTier) {
+            memoryTier.put(key, vector);
+        }
+        if (persistentTier != null) {
+            persistentTier.append(key, vector);
+        }
+    }
+
+    /**
+     * Flushes and closes the on-disk tier.
+     *
+     * @throws IOException if the files cannot be closed
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        if (persistentTier != null) {
+            persistentTier.close();
+        }
+    }
+
+    private void registerCounter(MeterRegistry meterRegistry, String result, AtomicLong counter) {
+        FunctionCounter.builder("embedding.cache.requests", counter, AtomicLong::get)
+                .description("Embedding cache lookups by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Builds the cache key for a text embedded by the given model.
+     *
+     * @param model the embedding model name
+     * @param text  the embedded text
+     * @return the model name joined with the hex SHA-256 of the text
+     */
+    private static String key(String model, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return model + ':' + HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Append-only on-disk tier. Vectors are stored in one {@link MappedVectorStorage} per dimension,
+     * which maps its file in fixed-size regions, so a read never remaps anything and the tier grows
+     * past 2 GB. The index file holds records of {@code [keyLength:short][key][dimension:int][slot:int]}
+     * and is replayed into an in-memory map on startup.
+     * <p>
+     * Access is guarded by a {@link ReadWriteLock} rather than a monitor: appends do file I/O,
+     * which would pin the carrier thread of a virtual thread blocking inside a {@code synchronized} block.
+     */
+    private static final class PersistentTier {
+
+        private static final String INDEX_FILE = "keys.idx";
+        private static final String VECTOR_FILE_PREFIX = "vectors-";
+        private static final String VECTOR_FILE_SUFFIX = ".dat";
+        private static final List<String> LEGACY_FILES = List.of("embeddings.dat", "embeddings.idx");
+
+        private final Path directory;
+        private final FileChannel index;
+        private final Map<Integer, MappedVectorStorage> storages = new HashMap<>();
+        private final Map<String, Location> locations = new ConcurrentHashMap<>();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private PersistentTier(Path directory) throws IOException {
+            this.directory = directory;
+            Files.createDirectories(directory);
+            for (String legacy : LEGACY_FILES) {
+                if (Files.deleteIfExists(directory.resolve(legacy))) {
+                    log.info("Deleted embedding cache file {} of an earlier format", legacy);
+                }
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                    VECTOR_FILE_PREFIX + "*" + VECTOR_FILE_SUFFIX)) {
+                for (Path file : files) {
+                    int dimensions = MappedVectorStorage.readDimensions(file);
+                    storages.put(dimensions, openStorage(dimensions));
+                }
+            }
+            this.index = FileChannel.open(directory.resolve(INDEX_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            loadIndex();
+            log.info("Embedding cache opened with {} persisted vectors", locations.size());
+        }
+
+        private void loadIndex() throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate((int) index.size());
+            while (buffer.hasRemaining() && index.read(buffer, buffer.position()) >= 0) {
+                // read until the whole index is in memory
+            }
+            buffer.flip();
+            int validEnd = 0;
+            while (buffer.remaining() >= Short.BYTES) {
+                int keyLength = buffer.getShort();
+                if (buffer.remaining() < keyLength + 2 * Integer.BYTES) {
+                    break;
+                }
+                byte[] key = new byte[keyLength];
+                buffer.get(key);
+                Location location = new Location(buffer.getInt(), buffer.getInt());
+                validEnd = buffer.position();
+                MappedVectorStorage storage = storages.get(location.dimensions());
+                if (storage != null && location.slot() < storage.size()) {
+                    locations.put(new String(key, StandardCharsets.UTF_8), location);
+                }
+            }
+            // Drop a torn trailing record left by a crash so later appends stay aligned.
+            index.truncate(validEnd);
+            index.position(validEnd);
+        }
+
+        private float[] read(String key) {
+            Location location = locations.get(key);
+            if (location == null) {
+                return null;
+            }
+            float[] vector = new float[location.dimensions()];
+            lock.readLock().lock();
+            try {
+                storages.get(location.dimensions()).read(location.slot(), vector);
+            } finally {
+                lock.readLock().unlock();
+            }
+            return vector;
+        }
+
+        private void append(String key, float[] vector) {
+            lock.writeLock().lock();
+            try {
+                if (locations.containsKey(key)) {
+                    return;
+                }
+                MappedVectorStorage storage = storages.get(vector.length);
+                if (storage == null) {
+                    storage = openStorage(vector.length);
+                    storages.put(vector.length, storage);
+                }
+                // The vector is committed before its key, so the index never points past the vectors.
+                Location location = new Location(vector.length, storage.append(vector));
+
+                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer entry = ByteBuffer.allocate(Short.BYTES + keyBytes.length + 2 * Integer.BYTES);
+                entry.putShort((short) keyBytes.length).put(keyBytes)
+                        .putInt(location.dimensions()).putInt(location.slot()).flip();
+                while (entry.hasRemaining()) {
+                    index.write(entry);
+                }
+                locations.put(key, location);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to persist embedding", e);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private MappedVectorStorage openStorage(int dimensions) throws IOException {
+            // The cache never scores vectors, so the kernel goes unused
+            return new MappedVectorStorage(directory.resolve(VECTOR_FILE_PREFIX + dimensions + VECTOR_FILE_SUFFIX),
+                    dimensions, new ScalarSimilarityKernel());
+        }
+
+        private void close() throws IOException {
+            lock.writeLock().lock();
+            try {
+                for (MappedVectorStorage storage : storages.values()) {
+                    storage.close();
+                }
+                index.force(true);
+                index.close();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Where a persisted vector lives.
+         *
+         * @param dimensions the dimension of the vector, which selects its storage
+         * @param slot       the slot of the vector in that storage
+         */
+        private record Location(int dimensions, int slot) {
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.epam.training.gen.ai.service;
+
+import com.azure.ai.openai.models.EmbeddingItem;
+import com.azure.ai.openai.models.Embeddings;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Combines single-text embedding requests from concurrent callers into multi-input embeddings calls.
+ * <p>
+ * A request waits at most {@code window} for others to join it: a batch is sent when it reaches
+ * {@code maxSize} texts or when the window of its first text elapses, whichever comes first. The
+ * vectors of the response are handed back to each caller by prompt index, and a failed call fails
+ * every request of its batch. Under load this trades at most one window of latency per request for
+ * far fewer embeddings calls, which is what the embedding deployment's request-rate limit counts.
+ * <p>
+ * A zero window disables batching: every request is sent on its own right away.
+ */
+@Slf4j
+final class EmbeddingMicroBatcher implements AutoCloseable {
+
+    private final Function<List<String>, Mono<Embeddings>> embeddingsClient;
+    private final Sinks.Many<PendingEmbedding> requests;
+    private final Disposable subscription;
+
+    /**
+     * Creates a batcher and starts dispatching batches.
+     *
+     * @param embeddingsClient sends one multi-input embeddings call
+     * @param window           the longest time a request waits for others to join its batch
+     * @param maxSize          the maximum number of texts in a batch
+     * @throws IllegalArgumentException if the window is negative or the batch size is not positive
+     */
+    EmbeddingMicroBatcher(Function<List<String>, Mono<Embeddings>> embeddingsClient, Duration window, int maxSize) {
+        if (window.isNegative() || maxSize < 1) {
+            throw new IllegalArgumentException("Embedding micro-batch window must not be negative and its size must be positive");
+        }
+        this.embeddingsClient = embeddingsClient;
+        if (window.isZero() || maxSize == 1) {
+            this.requests = null;
+            this.subscription = null;
+            return;
+        }
+        this.requests = Sinks.many().unicast().onBackpressureBuffer();
+        this.subscription = requests.asFlux()
+                .bufferTimeout(maxSize, window, true)
+                .flatMap(this::dispatch)
+                .subscribe();
+    }
+
+    /**
+     * Embeds a text as part of the next batch.
+     *
+     * @param text the text to embed
+     * @return a {@link Mono} emitting the embedding vector
+     */
+    Mono<float[]> embed(String text) {
+        if (requests == null) {
+            return embeddingsClient.apply(List.of(text))
+                    .map(embeddings -> EmbeddingVectors.decode(embeddings.getData().get(0)));
+        }
+        return Mono.defer(() -> {
+            PendingEmbedding pending = new PendingEmbedding(text, Sinks.one());
+            Sinks.EmitResult result;
+            // Callers emit from many threads, while a sink only accepts one emission at a time
+            synchronized (requests) {
+                result = requests.tryEmitNext(pending);
+            }
+            if (result.isFailure()) {
+                return Mono.error(new IllegalStateException("Embedding batcher is closed (" + result + ")"));
+            }
+            return pending.vector().asMono();
+        });
+    }
+
+    /**
+     * Stops dispatching batches. Requests that have not been sent yet never complete.
+     */
+    @Override
+    public void close() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * Sends one batch and completes each of its requests with its vector or with the failure.
+     *
+     * @param batch the requests of the batch
+     * @return a {@link Mono} completing once every request of the batch is completed
+     */
+    private Mono<Void> dispatch(List<PendingEmbedding> batch) {
+        List<String> texts = new ArrayList<>(batch.size());
+        for (PendingEmbedding pending : batch) {
+            texts.add(pending.text());
+        }
+        return Mono.defer(() -> embeddingsClient.apply(texts))
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("No embeddings returned for batch")))
+                .doOnNext(embeddings -> {
+                    float[][] vectors = new float[batch.size()][];
+                    for (EmbeddingItem item : embeddings.getData()) {
+                        vectors[item.getPromptIndex()] = EmbeddingVectors.decode(item);
+                    }
+                    for (int i = 0; i < vectors.length; i++) {
+                        Sinks.One<float[]> vector = batch.get(i).vector();
+                        if (vectors[i] == null) {
+                            vector.tryEmitError(new IllegalStateException("No embedding returned for batched text " + i));
+                        } else {
+                            vector.tryEmitValue(vectors[i]);
+                        }
+                    }
+                    log.debug("Embedded micro-batch of {} texts", batch.size());
+                })
+                .doOnError(e -> batch.forEach(pending -> pending.vector().tryEmitError(e)))
+                .then()
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    /**
+     * A text waiting to be embedded and the sink its vector is delivered to.
+     */
+    private record PendingEmbedding(String text, Sinks.One<float[]> vector) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.epam.training.gen.ai.service;
+
+import com.azure.ai.openai.models.EmbeddingItem;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Decodes embedding vectors from OpenAI responses straight into {@code float[]}.
+ * <p>
+ * The OpenAI client always requests embeddings base64 encoded, as little-endian float32 values, but
+ * {@link EmbeddingItem#getEmbedding()} decodes them into a new {@code List<Float>} on every call,
+ * boxing each value. Decoding the base64 payload directly allocates the decoded bytes and the
+ * resulting array only, which is what the rest of the embedding path works with.
+ */
+final class EmbeddingVectors {
+
+    private EmbeddingVectors() {
+    }
+
+    /**
+     * Decodes the embedding vector of a response item.
+     *
+     * @param item the embedding item
+     * @return the vector values
+     */
+    static float[] decode(EmbeddingItem item) {
+        String encoded = item.getEmbeddingAsString();
+        if (encoded.startsWith("[")) {
+            // A float array payload, in case the service ignored the requested encoding
+            return toArray(item.getEmbedding());
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(Base64.getDecoder().decode(encoded)).order(ByteOrder.LITTLE_ENDIAN);
+        float[] vector = new float[bytes.remaining() / Float.BYTES];
+        bytes.asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    /**
+     * Copies a boxed embedding vector into a primitive array.
+     *
+     * @param vector the vector values
+     * @return the same values as a {@code float[]}
+     */
+    static float[] toArray(List<Float> vector) {
+        float[] values = new float[vector.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = vector.get(i);
+        }
+        return values;
+    }
+}
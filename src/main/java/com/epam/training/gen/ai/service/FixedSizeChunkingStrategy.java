@@ -0,0 +1,21 @@
+package com.epam.training.gen.ai.service;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Chunking strategy that cuts chunks of exactly the configured size, regardless of word or
+ * sentence boundaries. It is the cheapest strategy and keeps chunk sizes uniform.
+ */
+@Component
+public class FixedSizeChunkingStrategy extends BoundaryChunkingStrategy {
+
+    @Override
+    public String getName() {
+        return "fixed";
+    }
+
+    @Override
+    protected int chunkEnd(String text, int from, int limit) {
+        return avoidSplittingSurrogates(text, from, limit);
+    }
+}
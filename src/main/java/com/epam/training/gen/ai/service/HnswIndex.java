@@ -0,0 +1,834 @@
+package com.epam.training.gen.ai.service;
+
+import com.epam.training.gen.ai.domain.RecallReport;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * An in-memory Hierarchical Navigable Small World graph for approximate nearest-neighbour search
+ * by cosine similarity.
+ * <p>
+ * Vectors are normalised on insertion so that cosine similarity reduces to a dot product, and are
+ * kept off-heap in a {@link MappedVectorStorage}; identifiers and payloads are written to a
+ * {@link PointJournal}, and payloads are only read back for search results. The heap therefore
+ * holds just the graph links and identifiers. The graph itself is not persisted: opening an index
+ * rebuilds it from the stored vectors, without embedding anything again. Every
+ * node is linked to up to {@code m} neighbours on the upper layers and {@code 2 * m} on the bottom
+ * layer, chosen with the neighbour-diversity heuristic of the original paper. Replaced and deleted
+ * points are only marked as deleted: they keep routing searches through the graph, but the bottom
+ * layer search only collects live nodes, so a search still finds as many live matches as asked for.
+ * <p>
+ * Once deleted nodes make up {@code compactionThreshold} of the graph, the index is compacted: the
+ * live points are copied to new vector and journal files, which replace the old ones, and the graph
+ * is rebuilt from them. Re-ingesting the same documents therefore does not grow the files and the
+ * graph without bound. The journal is replaced first and marks the point of no return; a
+ * compaction interrupted by a crash is completed or dropped when the index is next opened.
+ * <p>
+ * Optionally, every vector is also kept as an int8 copy in a {@link QuantizedVectorStorage}, about a
+ * quarter of the size. Searches then walk the graph scoring the quantized copies, which keeps the
+ * full-precision file cold, and rescore only the best {@code limit * rescoreOversampling} live
+ * candidates with their full-precision vectors. The graph itself is always built on full-precision
+ * vectors. {@link #measureRecall} compares both search paths against exact search.
+ * <p>
+ * Searches run in parallel with each other; insertions and deletions, and the compactions they
+ * trigger, are exclusive.
+ */
+@Slf4j
+final class HnswIndex implements Closeable {
+
+    private static final String VECTOR_SUFFIX = ".vec";
+    private static final String QUANTIZED_SUFFIX = ".i8";
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String COMPACTING_SUFFIX = ".compacting";
+
+    private static final Comparator<Candidate> BEST_FIRST = Comparator.comparingDouble(Candidate::similarity).reversed();
+    private static final Comparator<Candidate> WORST_FIRST = Comparator.comparingDouble(Candidate::similarity);
+
+    private final Path directory;
+    private final String name;
+    private final int dimensions;
+    private final boolean quantize;
+    private final SimilarityKernel kernel;
+    private final int m;
+    private final int efConstruction;
+    private final double compactionThreshold;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<String, Integer> nodeIds = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private MappedVectorStorage vectors;
+    private QuantizedVectorStorage quantized;
+    private PointJournal journal;
+    private int entryPoint = -1;
+    private int topLevel = -1;
+
+    private HnswIndex(Path directory, String name, int dimensions, boolean quantize, SimilarityKernel kernel,
+                      int m, int efConstruction, double compactionThreshold) {
+        this.directory = directory;
+        this.name = name;
+        this.dimensions = dimensions;
+        this.quantize = quantize;
+        this.kernel = kernel;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.compactionThreshold = compactionThreshold;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    /**
+     * Opens the index stored in a directory under the given name, creating it if it does not
+     * exist, and rebuilds its graph from the stored points.
+     *
+     * @param directory      the directory holding the index files
+     * @param name           the index name, used as the file name prefix
+     * @param dimensions     the number of dimensions of the indexed vectors
+     * @param m              the number of links per node on the upper layers
+     * @param efConstruction      the size of the candidate list used while inserting
+     * @param quantize            whether to keep int8 copies of the vectors for searching
+     * @param compactionThreshold the share of deleted nodes in the graph that triggers a compaction
+     * @param kernel              the kernel used to score vectors
+     * @return the opened index
+     * @throws IOException if the index files cannot be opened
+     */
+    static HnswIndex open(Path directory, String name, int dimensions, int m, int efConstruction,
+                          boolean quantize, double compactionThreshold, SimilarityKernel kernel) throws IOException {
+        recoverCompaction(directory, name);
+        HnswIndex index = new HnswIndex(directory, name, dimensions, quantize, kernel, m, efConstruction,
+                compactionThreshold);
+        index.openFiles();
+        try {
+            index.rebuild();
+        } catch (IOException | RuntimeException e) {
+            closeAll(e, index.journal, index.quantized, index.vectors);
+            throw e;
+        }
+        return index;
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return nodeIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts points, replacing any point with the same identifier. A point whose vector did not
+     * change only has its payload updated. Compacts the index if the replaced points push the
+     * share of deleted nodes past the threshold.
+     *
+     * @param records the points to insert
+     * @throws IOException              if the points cannot be written or the index cannot be compacted
+     * @throws IllegalArgumentException if a vector has the wrong number of dimensions or is zero
+     */
+    void upsert(List<VectorRecord> records) throws IOException {
+        List<float[]> normalized = new ArrayList<>(records.size());
+        for (VectorRecord record : records) {
+            normalized.add(normalize(record.vector()));
+        }
+        lock.writeLock().lock();
+        try {
+            float[] stored = new float[dimensions()];
+            for (int i = 0; i < records.size(); i++) {
+                VectorRecord record = records.get(i);
+                float[] vector = normalized.get(i);
+                Integer existing = nodeIds.get(record.id());
+                if (existing != null) {
+                    Node node = nodes.get(existing);
+                    vectors.read(node.slot, stored);
+                    if (Arrays.equals(stored, vector)) {
+                        node.payloadOffset = journal.appendUpsert(record.id(), node.slot, record.payload());
+                        continue;
+                    }
+                    node.deleted = true;
+                }
+                int slot = appendVector(vector);
+                long payloadOffset = journal.appendUpsert(record.id(), slot, record.payload());
+                nodeIds.put(record.id(), insert(new Node(record.id(), slot, payloadOffset, randomLevel()), vector));
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks points as deleted, and compacts the index if that pushes the share of deleted nodes
+     * past the threshold.
+     *
+     * @param ids the identifiers of the points
+     * @throws IOException if the deletion cannot be written or the index cannot be compacted
+     */
+    void delete(Collection<String> ids) throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (String id : ids) {
+                Integer node = nodeIds.remove(id);
+                if (node != null) {
+                    nodes.get(node).deleted = true;
+                    journal.appendDelete(id);
+                }
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the subset of the given identifiers that are stored.
+     *
+     * @param ids the identifiers to check
+     * @return the stored identifiers
+     */
+    Set<String> existingIds(Collection<String> ids) {
+        lock.readLock().lock();
+        try {
+            Set<String> existing = new HashSet<>();
+            for (String id : ids) {
+                if (nodeIds.containsKey(id)) {
+                    existing.add(id);
+                }
+            }
+            return existing;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the points most similar to a query vector. Payloads are only read for the returned
+     * points, and not at all if no payload field is selected.
+     *
+     * @param query               the query vector
+     * @param options             the number of points to skip and return, the minimum cosine
+     *                            similarity of a returned point and the payload fields to return
+     * @param efSearch            the size of the candidate list explored on the bottom layer
+     * @param rescoreOversampling how many candidates per requested match are rescored with
+     *                            full-precision vectors when the index is quantized
+     * @return the matches, most similar first
+     * @throws IOException if the payload of a match cannot be read
+     */
+    List<VectorMatch> search(float[] query, SearchOptions options, int efSearch,
+                             int rescoreOversampling) throws IOException {
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+            List<VectorMatch> matches = new ArrayList<>(options.limit());
+            int skipped = 0;
+            for (Candidate candidate : rank(normalized, options.offset() + options.limit(), efSearch, rescoreOversampling)) {
+                if (matches.size() == options.limit() || candidate.similarity() < options.scoreThreshold()) {
+                    break;
+                }
+                Node node = nodes.get(candidate.node());
+                if (skipped < options.offset()) {
+                    skipped++;
+                    continue;
+                }
+                Map<String, String> payload = options.includesPayload()
+                        ? options.project(journal.readPayload(node.payloadOffset))
+                        : Map.of();
+                matches.add(new VectorMatch(node.id, candidate.similarity(), payload));
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Measures the recall@k of the graph search against exact brute-force search, on full-precision
+     * vectors and, if the index is quantized, on quantized vectors before and after rescoring.
+     * Randomly sampled stored points serve as queries; the query point itself is left out of every
+     * result, since every search finds it.
+     *
+     * @param k                   the number of neighbours to compare
+     * @param queries             the maximum number of sampled queries
+     * @param efSearch            the size of the candidate list explored on the bottom layer
+     * @param rescoreOversampling how many candidates per neighbour are rescored when quantized
+     * @return the report, without the collection name
+     */
+    RecallReport measureRecall(int k, int queries, int efSearch, int rescoreOversampling) {
+        lock.readLock().lock();
+        try {
+            List<Integer> live = new ArrayList<>(nodeIds.values());
+            Collections.shuffle(live, new Random(42));
+            int sampled = Math.min(queries, live.size());
+            float[] query = new float[dimensions()];
+            double fullPrecisionRecall = 0;
+            double quantizedRecall = 0;
+            double rescoredRecall = 0;
+            long exactNanos = 0;
+            long fullPrecisionNanos = 0;
+            long rescoredNanos = 0;
+            for (int i = 0; i < sampled; i++) {
+                int queryNode = live.get(i);
+                vectors.read(nodes.get(queryNode).slot, query);
+                long started = System.nanoTime();
+                Set<Integer> exact = topNodes(exactSearch(query, k + 1), k, queryNode);
+                long exactDone = System.nanoTime();
+                List<Candidate> graph = graphSearch(exactScorer(query), Math.max(efSearch, k + 1));
+                long graphDone = System.nanoTime();
+                exactNanos += exactDone - started;
+                fullPrecisionNanos += graphDone - exactDone;
+                fullPrecisionRecall += recall(exact, topNodes(graph, k, queryNode));
+                if (quantized != null) {
+                    int rescored = (k + 1) * rescoreOversampling;
+                    List<Candidate> candidates = graphSearch(quantizedScorer(query), Math.max(efSearch, rescored));
+                    List<Candidate> ranked = rescore(candidates, rescored, query);
+                    rescoredNanos += System.nanoTime() - graphDone;
+                    quantizedRecall += recall(exact, topNodes(candidates, k, queryNode));
+                    rescoredRecall += recall(exact, topNodes(ranked, k, queryNode));
+                }
+            }
+            double perQuery = Math.max(sampled, 1);
+            boolean quantizedIndex = quantized != null;
+            return new RecallReport(null, live.size(), k, sampled, quantizedIndex ? "int8" : "none",
+                    dimensions() * Float.BYTES,
+                    quantizedIndex ? QuantizedVectorStorage.bytesPerVector(dimensions()) : null,
+                    fullPrecisionRecall / perQuery,
+                    quantizedIndex ? quantizedRecall / perQuery : null,
+                    quantizedIndex ? rescoredRecall / perQuery : null,
+                    exactNanos / 1000.0 / perQuery,
+                    fullPrecisionNanos / 1000.0 / perQuery,
+                    quantizedIndex ? rescoredNanos / 1000.0 / perQuery : null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes and closes the index files.
+     *
+     * @throws IOException if the files cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closeFiles();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Opens the vector, quantized vector and journal files of the index.
+     */
+    private void openFiles() throws IOException {
+        MappedVectorStorage openedVectors = new MappedVectorStorage(file(VECTOR_SUFFIX), dimensions, kernel);
+        QuantizedVectorStorage openedQuantized = null;
+        try {
+            if (quantize) {
+                openedQuantized = new QuantizedVectorStorage(file(QUANTIZED_SUFFIX), dimensions, kernel);
+            }
+            journal = new PointJournal(file(JOURNAL_SUFFIX));
+        } catch (IOException | RuntimeException e) {
+            closeAll(e, openedQuantized, openedVectors);
+            throw e;
+        }
+        vectors = openedVectors;
+        quantized = openedQuantized;
+    }
+
+    private void closeFiles() throws IOException {
+        try {
+            journal.close();
+        } finally {
+            try {
+                if (quantized != null) {
+                    quantized.close();
+                }
+            } finally {
+                vectors.close();
+            }
+        }
+    }
+
+    private static void closeAll(Exception failure, Closeable... files) {
+        for (Closeable opened : files) {
+            if (opened != null) {
+                try {
+                    opened.close();
+                } catch (IOException suppressed) {
+                    failure.addSuppressed(suppressed);
+                }
+            }
+        }
+    }
+
+    private Path file(String suffix) {
+        return directory.resolve(name + suffix);
+    }
+
+    private void compactIfNeeded() throws IOException {
+        int deleted = nodes.size() - nodeIds.size();
+        if (deleted > 0 && deleted >= compactionThreshold * nodes.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Copies the live points to new vector and journal files, in slot order, swaps them in for the
+     * old files and rebuilds the graph from them. Until the new journal replaces the old one, a
+     * failure leaves the index as it was.
+     */
+    private void compact() throws IOException {
+        long started = System.nanoTime();
+        int deleted = nodes.size() - nodeIds.size();
+        List<Node> live = new ArrayList<>(nodeIds.size());
+        for (int index : nodeIds.values()) {
+            live.add(nodes.get(index));
+        }
+        live.sort(Comparator.comparingInt(node -> node.slot));
+
+        Path compactedVectors = file(VECTOR_SUFFIX + COMPACTING_SUFFIX);
+        Path compactedJournal = file(JOURNAL_SUFFIX + COMPACTING_SUFFIX);
+        Files.deleteIfExists(compactedVectors);
+        Files.deleteIfExists(compactedJournal);
+        try (MappedVectorStorage copiedVectors = new MappedVectorStorage(compactedVectors, dimensions, kernel);
+             PointJournal copiedJournal = new PointJournal(compactedJournal)) {
+            float[] vector = new float[dimensions];
+            for (Node node : live) {
+                vectors.read(node.slot, vector);
+                copiedJournal.appendUpsert(node.id, copiedVectors.append(vector), journal.readPayload(node.payloadOffset));
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(compactedVectors);
+            Files.deleteIfExists(compactedJournal);
+            throw e;
+        }
+
+        closeFiles();
+        Files.move(compactedJournal, file(JOURNAL_SUFFIX), REPLACE_EXISTING, ATOMIC_MOVE);
+        installCompactedVectors(directory, name);
+        nodes.clear();
+        nodeIds.clear();
+        entryPoint = -1;
+        topLevel = -1;
+        openFiles();
+        rebuild();
+        log.info("Compacted HNSW index '{}': dropped {} deleted nodes, kept {} points, in {} ms", name, deleted,
+                nodeIds.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Completes or drops a compaction interrupted by a crash. A compacted journal still next to the
+     * old one means the compaction never took effect, so its files are deleted; a compacted vector
+     * file on its own belongs to the journal already in place, so it replaces the old vector file.
+     */
+    private static void recoverCompaction(Path directory, String name) throws IOException {
+        Path compactedVectors = directory.resolve(name + VECTOR_SUFFIX + COMPACTING_SUFFIX);
+        Path compactedJournal = directory.resolve(name + JOURNAL_SUFFIX + COMPACTING_SUFFIX);
+        if (Files.exists(compactedJournal)) {
+            Files.delete(compactedJournal);
+            Files.deleteIfExists(compactedVectors);
+        } else if (Files.exists(compactedVectors)) {
+            installCompactedVectors(directory, name);
+        }
+    }
+
+    /**
+     * Moves the compacted vector file over the old one. The quantized copies of the old slots are
+     * deleted first, so that they are quantized again from the compacted vectors when opened.
+     */
+    private static void installCompactedVectors(Path directory, String name) throws IOException {
+        Files.deleteIfExists(directory.resolve(name + QUANTIZED_SUFFIX));
+        Files.move(directory.resolve(name + VECTOR_SUFFIX + COMPACTING_SUFFIX), directory.resolve(name + VECTOR_SUFFIX),
+                REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    /**
+     * Replays the journal and inserts the latest version of every live point into the graph,
+     * in the order the vectors were stored. Journal records pointing past the stored vectors,
+     * which a crash can leave behind, are ignored.
+     */
+    private void rebuild() throws IOException {
+        syncQuantized();
+        Map<String, PointJournal.Entry> latest = new LinkedHashMap<>();
+        for (PointJournal.Entry entry : journal.replay()) {
+            if (entry.slot() < 0) {
+                latest.remove(entry.id());
+            } else if (entry.slot() < vectors.size()) {
+                latest.put(entry.id(), entry);
+            }
+        }
+        float[] vector = new float[dimensions()];
+        latest.values().stream()
+                .sorted(Comparator.comparingInt(PointJournal.Entry::slot))
+                .forEach(entry -> {
+                    vectors.read(entry.slot(), vector);
+                    Node node = new Node(entry.id(), entry.slot(), entry.offset(), randomLevel());
+                    nodeIds.put(entry.id(), insert(node, vector));
+                });
+    }
+
+    private int appendVector(float[] vector) throws IOException {
+        int slot = vectors.append(vector);
+        syncQuantized();
+        return slot;
+    }
+
+    /**
+     * Brings the quantized copies in line with the full-precision vectors, slot for slot: copies a
+     * crash left past the last vector are dropped, and vectors without a copy, such as those
+     * stored before quantization was enabled, are quantized.
+     */
+    private void syncQuantized() throws IOException {
+        if (quantized == null) {
+            return;
+        }
+        quantized.truncate(vectors.size());
+        float[] vector = new float[dimensions()];
+        for (int slot = quantized.size(); slot < vectors.size(); slot++) {
+            vectors.read(slot, vector);
+            quantized.append(vector);
+        }
+    }
+
+    /**
+     * Ranks nodes by similarity to a normalised query, most similar first. Without quantization
+     * this is the graph search on full-precision vectors; with quantization the graph is searched
+     * on the quantized vectors and the best {@code limit * rescoreOversampling} live candidates are
+     * rescored with their full-precision vectors.
+     */
+    private List<Candidate> rank(float[] query, int limit, int efSearch, int rescoreOversampling) {
+        if (quantized == null) {
+            return graphSearch(exactScorer(query), Math.max(efSearch, limit));
+        }
+        int rescored = limit * rescoreOversampling;
+        return rescore(graphSearch(quantizedScorer(query), Math.max(efSearch, rescored)), rescored, query);
+    }
+
+    /**
+     * Rescores the first {@code count} candidates with full-precision vectors.
+     *
+     * @return the rescored candidates, most similar first
+     */
+    private List<Candidate> rescore(List<Candidate> candidates, int count, float[] query) {
+        List<Candidate> rescored = new ArrayList<>(Math.min(count, candidates.size()));
+        for (Candidate candidate : candidates) {
+            if (rescored.size() == count) {
+                break;
+            }
+            rescored.add(new Candidate(candidate.node(), vectors.dot(nodes.get(candidate.node()).slot, query)));
+        }
+        rescored.sort(BEST_FIRST);
+        return rescored;
+    }
+
+    /**
+     * Scores every live node against the query.
+     *
+     * @return the {@code count} most similar live nodes, most similar first
+     */
+    private List<Candidate> exactSearch(float[] query, int count) {
+        PriorityQueue<Candidate> results = new PriorityQueue<>(WORST_FIRST);
+        for (int index : nodeIds.values()) {
+            float similarity = similarity(query, index);
+            if (results.size() < count || similarity > results.peek().similarity()) {
+                results.add(new Candidate(index, similarity));
+                if (results.size() > count) {
+                    results.poll();
+                }
+            }
+        }
+        List<Candidate> found = new ArrayList<>(results);
+        found.sort(BEST_FIRST);
+        return found;
+    }
+
+    /**
+     * Returns the first {@code k} nodes of a ranking of live nodes, leaving out one node.
+     */
+    private Set<Integer> topNodes(List<Candidate> ranked, int k, int excluded) {
+        Set<Integer> top = new HashSet<>();
+        for (Candidate candidate : ranked) {
+            if (top.size() == k) {
+                break;
+            }
+            if (candidate.node() != excluded) {
+                top.add(candidate.node());
+            }
+        }
+        return top;
+    }
+
+    private static double recall(Set<Integer> exact, Set<Integer> found) {
+        if (exact.isEmpty()) {
+            return 1;
+        }
+        int hits = 0;
+        for (int node : found) {
+            if (exact.contains(node)) {
+                hits++;
+            }
+        }
+        return (double) hits / exact.size();
+    }
+
+    /**
+     * Searches the graph from the entry point down to the bottom layer. Deleted nodes are walked
+     * through, but only live nodes are collected on the bottom layer.
+     *
+     * @return up to {@code ef} closest live nodes found on the bottom layer, most similar first
+     */
+    private List<Candidate> graphSearch(Scorer scorer, int ef) {
+        int entry = entryPoint;
+        for (int layer = topLevel; layer > 0; layer--) {
+            entry = searchLayer(scorer, entry, 1, layer, false).get(0).node();
+        }
+        return searchLayer(scorer, entry, ef, 0, true);
+    }
+
+    private int insert(Node node, float[] vector) {
+        int index = nodes.size();
+        nodes.add(node);
+        if (entryPoint < 0) {
+            entryPoint = index;
+            topLevel = node.level;
+            return index;
+        }
+        Scorer scorer = exactScorer(vector);
+        int entry = entryPoint;
+        for (int layer = topLevel; layer > node.level; layer--) {
+            entry = searchLayer(scorer, entry, 1, layer, false).get(0).node();
+        }
+        for (int layer = Math.min(node.level, topLevel); layer >= 0; layer--) {
+            List<Candidate> found = searchLayer(scorer, entry, efConstruction, layer, false);
+            List<Candidate> neighbours = selectNeighbours(found, m);
+            for (Candidate neighbour : neighbours) {
+                node.addLink(layer, neighbour.node());
+                connect(neighbour.node(), index, neighbour.similarity(), layer);
+            }
+            entry = found.get(0).node();
+        }
+        if (node.level > topLevel) {
+            topLevel = node.level;
+            entryPoint = index;
+        }
+        return index;
+    }
+
+    /**
+     * Adds a back link from an existing node to a new neighbour, re-selecting the node's
+     * neighbours if it already has as many links as its layer allows.
+     */
+    private void connect(int from, int to, float similarity, int layer) {
+        Node node = nodes.get(from);
+        int maxLinks = maxLinks(layer);
+        if (node.linkCount[layer] < maxLinks) {
+            node.addLink(layer, to);
+            return;
+        }
+        List<Candidate> candidates = new ArrayList<>(maxLinks + 1);
+        candidates.add(new Candidate(to, similarity));
+        for (int i = 0; i < node.linkCount[layer]; i++) {
+            int neighbour = node.links[layer][i];
+            candidates.add(new Candidate(neighbour, similarity(from, neighbour)));
+        }
+        candidates.sort(BEST_FIRST);
+        node.linkCount[layer] = 0;
+        for (Candidate candidate : selectNeighbours(candidates, maxLinks)) {
+            node.addLink(layer, candidate.node());
+        }
+    }
+
+    /**
+     * Picks up to {@code max} neighbours from candidates sorted best first, preferring candidates
+     * that are closer to the base point than to any neighbour picked so far, so that links spread
+     * in different directions. Remaining slots are filled with the best of the skipped candidates.
+     */
+    private List<Candidate> selectNeighbours(List<Candidate> candidates, int max) {
+        List<Candidate> selected = new ArrayList<>(max);
+        List<Candidate> skipped = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (selected.size() == max) {
+                break;
+            }
+            boolean diverse = true;
+            for (Candidate picked : selected) {
+                if (similarity(candidate.node(), picked.node()) > candidate.similarity()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : skipped).add(candidate);
+        }
+        for (int i = 0; i < skipped.size() && selected.size() < max; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected;
+    }
+
+    /**
+     * Best-first search of one layer, starting from a single entry point. With {@code liveOnly},
+     * deleted nodes are still expanded but never collected, so they do not take up any of the
+     * {@code ef} result slots.
+     *
+     * @return up to {@code ef} closest nodes found, most similar first
+     */
+    private List<Candidate> searchLayer(Scorer scorer, int entry, int ef, int layer, boolean liveOnly) {
+        BitSet visited = new BitSet(nodes.size());
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(WORST_FIRST);
+        Candidate start = new Candidate(entry, scorer.similarity(entry));
+        visited.set(entry);
+        candidates.add(start);
+        if (!liveOnly || !nodes.get(entry).deleted) {
+            results.add(start);
+        }
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.similarity() < results.peek().similarity()) {
+                break;
+            }
+            Node node = nodes.get(current.node());
+            for (int i = 0; i < node.linkCount[layer]; i++) {
+                int neighbour = node.links[layer][i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float similarity = scorer.similarity(neighbour);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Candidate candidate = new Candidate(neighbour, similarity);
+                    candidates.add(candidate);
+                    if (!liveOnly || !nodes.get(neighbour).deleted) {
+                        results.add(candidate);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        List<Candidate> found = new ArrayList<>(results);
+        found.sort(BEST_FIRST);
+        return found;
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+    }
+
+    private int maxLinks(int layer) {
+        return layer == 0 ? 2 * m : m;
+    }
+
+    private float[] normalize(float[] vector) {
+        if (vector.length != dimensions()) {
+            throw new IllegalArgumentException("Expected a vector of " + dimensions() + " dimensions, got " + vector.length);
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        if (norm == 0) {
+            throw new IllegalArgumentException("Cannot index a zero vector");
+        }
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private Scorer exactScorer(float[] query) {
+        return node -> similarity(query, node);
+    }
+
+    private Scorer quantizedScorer(float[] query) {
+        QuantizedVectorStorage.Query quantizedQuery = quantized.quantize(query);
+        return node -> quantized.dot(nodes.get(node).slot, quantizedQuery);
+    }
+
+    private float similarity(float[] query, int node) {
+        return vectors.dot(nodes.get(node).slot, query);
+    }
+
+    private float similarity(int a, int b) {
+        return vectors.dot(nodes.get(a).slot, nodes.get(b).slot);
+    }
+
+    /**
+     * Scores graph nodes against one query, on full-precision or quantized vectors.
+     */
+    @FunctionalInterface
+    private interface Scorer {
+
+        float similarity(int node);
+    }
+
+    /**
+     * A node reached during a search, with its similarity to the query.
+     */
+    private record Candidate(int node, float similarity) {
+    }
+
+    /**
+     * A graph node: one stored point, where its vector and payload live, and its links on every
+     * layer it belongs to.
+     */
+    private final class Node {
+
+        private final String id;
+        private final int slot;
+        private final int level;
+        private final int[][] links;
+        private final int[] linkCount;
+        private long payloadOffset;
+        private boolean deleted;
+
+        private Node(String id, int slot, long payloadOffset, int level) {
+            this.id = id;
+            this.slot = slot;
+            this.payloadOffset = payloadOffset;
+            this.level = level;
+            this.links = new int[level + 1][];
+            this.linkCount = new int[level + 1];
+            for (int layer = 0; layer <= level; layer++) {
+                links[layer] = new int[maxLinks(layer)];
+            }
+        }
+
+        private void addLink(int layer, int node) {
+            links[layer][linkCount[layer]++] = node;
+        }
+    }
+}
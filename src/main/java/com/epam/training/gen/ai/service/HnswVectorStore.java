@@ -0,0 +1,207 @@
+package com.epam.training.gen.ai.service;
+
+import com.epam.training.gen.ai.domain.RecallReport;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * {@link VectorStore} that keeps every collection in an in-process HNSW graph.
+ * <p>
+ * Searches never leave the JVM, which makes this store a good fit for small and medium corpora,
+ * edge deployments without a Qdrant server, and tests. The graph is tuned with
+ * {@code vector-store.hnsw.m} (links per node), {@code vector-store.hnsw.ef-construction}
+ * (candidate list size while inserting, trading ingestion speed for graph quality) and
+ * {@code vector-store.hnsw.ef-search} (candidate list size while searching, trading latency for
+ * recall). Enabled with {@code vector-store.type=hnsw}.
+ * <p>
+ * With {@code vector-store.hnsw.quantization=int8}, searches score int8 copies of the vectors and
+ * rescore the best {@code limit * vector-store.hnsw.rescore-oversampling} candidates with the
+ * full-precision vectors; {@link #measureRecall} reports what this costs in recall.
+ * <p>
+ * Each collection is stored in {@code vector-store.hnsw.directory} as a memory-mapped vector file
+ * and a point journal, and is reopened on startup. Vectors stay off-heap, so the heap only grows
+ * with the graph links and point identifiers. Deleted and replaced points are dropped from the
+ * files and the graph once they make up {@code vector-store.hnsw.compaction-threshold} of a collection.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "vector-store.type", havingValue = "hnsw")
+public class HnswVectorStore implements VectorStore {
+
+    private static final Pattern COLLECTION_NAME = Pattern.compile("[A-Za-z0-9_.-]+");
+    private static final String VECTOR_FILE_SUFFIX = ".vec";
+
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final boolean quantize;
+    private final int rescoreOversampling;
+    private final double compactionThreshold;
+    private final Path directory;
+    private final SimilarityKernel kernel;
+    private final Map<String, HnswIndex> collections = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@code HnswVectorStore}.
+     *
+     * @param m              the number of links per node on the upper layers of the graph
+     * @param efConstruction the size of the candidate list used while inserting
+     * @param efSearch            the size of the candidate list used while searching
+     * @param quantization        {@code none} to search full-precision vectors, or {@code int8} to
+     *                            search quantized vectors and rescore the best candidates
+     * @param rescoreOversampling how many candidates per requested match are rescored when quantized
+     * @param compactionThreshold the share of deleted nodes in a collection that triggers its compaction
+     * @param directory           the directory holding the collection files
+     * @param kernel              the kernel used to score vectors
+     * @throws IOException if the directory cannot be created or an existing collection cannot be opened
+     */
+    public HnswVectorStore(
+            @Value("${vector-store.hnsw.m}") int m,
+            @Value("${vector-store.hnsw.ef-construction}") int efConstruction,
+            @Value("${vector-store.hnsw.ef-search}") int efSearch,
+            @Value("${vector-store.hnsw.quantization}") String quantization,
+            @Value("${vector-store.hnsw.rescore-oversampling}") int rescoreOversampling,
+            @Value("${vector-store.hnsw.compaction-threshold}") double compactionThreshold,
+            @Value("${vector-store.hnsw.directory}") String directory,
+            SimilarityKernel kernel
+    ) throws IOException {
+        if (m < 2 || efConstruction < 1 || efSearch < 1) {
+            throw new IllegalArgumentException("HNSW m must be at least 2 and ef values must be positive");
+        }
+        if (!quantization.equals("none") && !quantization.equals("int8")) {
+            throw new IllegalArgumentException("Unknown HNSW quantization '" + quantization + "', expected none or int8");
+        }
+        if (rescoreOversampling < 1) {
+            throw new IllegalArgumentException("HNSW rescore oversampling must be positive");
+        }
+        if (compactionThreshold <= 0 || compactionThreshold >= 1) {
+            throw new IllegalArgumentException("HNSW compaction threshold must be in (0, 1)");
+        }
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.quantize = quantization.equals("int8");
+        this.rescoreOversampling = rescoreOversampling;
+        this.compactionThreshold = compactionThreshold;
+        this.directory = Paths.get(directory);
+        this.kernel = kernel;
+        Files.createDirectories(this.directory);
+        openExistingCollections();
+    }
+
+    @Override
+    public Mono<Void> createCollection(String collection, int dimensions) {
+        return Mono.fromRunnable(() -> {
+            if (!COLLECTION_NAME.matcher(collection).matches()) {
+                throw new IncompatibleCollectionException("Invalid collection name '" + collection + "'");
+            }
+            HnswIndex index = collections.computeIfAbsent(collection, name -> {
+                log.info("Creating in-process HNSW collection '{}' ({} dimensions, m={}, ef-construction={}, quantized={})",
+                        name, dimensions, m, efConstruction, quantize);
+                return open(name, dimensions);
+            });
+            if (index.dimensions() != dimensions) {
+                throw new IncompatibleCollectionException("Collection '" + collection + "' has " + index.dimensions()
+                        + " dimensions, not " + dimensions);
+            }
+        });
+    }
+
+    @Override
+    public Mono<Long> upsert(String collection, List<VectorRecord> records) {
+        return Mono.fromCallable(() -> {
+            index(collection).upsert(records);
+            log.info("Upsert of {} points into in-process collection '{}'", records.size(), collection);
+            return (long) records.size();
+        });
+    }
+
+    @Override
+    public Mono<Set<String>> existingIds(String collection, Collection<String> ids) {
+        return Mono.fromCallable(() -> index(collection).existingIds(ids));
+    }
+
+    @Override
+    public Mono<List<VectorMatch>> search(String collection, float[] query, SearchOptions options) {
+        return Mono.fromCallable(() -> index(collection)
+                .search(query, options, efSearch, rescoreOversampling));
+    }
+
+    @Override
+    public Mono<Void> delete(String collection, Collection<String> ids) {
+        return Mono.fromCallable(() -> {
+            index(collection).delete(ids);
+            return true;
+        }).then();
+    }
+
+    @Override
+    public Mono<RecallReport> measureRecall(String collection, int k, int queries) {
+        return Mono.fromCallable(() -> {
+            RecallReport report = index(collection).measureRecall(k, queries, efSearch, rescoreOversampling);
+            report.setCollection(collection);
+            return report;
+        });
+    }
+
+    /**
+     * Flushes and closes every collection.
+     */
+    @PreDestroy
+    public void close() {
+        collections.forEach((name, index) -> {
+            try {
+                index.close();
+            } catch (IOException e) {
+                log.warn("Failed to close collection '{}'", name, e);
+            }
+        });
+    }
+
+    private void openExistingCollections() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + VECTOR_FILE_SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String name = fileName.substring(0, fileName.length() - VECTOR_FILE_SUFFIX.length());
+                long started = System.nanoTime();
+                HnswIndex index = open(name, MappedVectorStorage.readDimensions(file));
+                collections.put(name, index);
+                log.info("Opened in-process HNSW collection '{}' with {} points in {} ms", name, index.size(),
+                        (System.nanoTime() - started) / 1_000_000);
+            }
+        }
+    }
+
+    private HnswIndex open(String name, int dimensions) {
+        try {
+            return HnswIndex.open(directory, name, dimensions, m, efConstruction, quantize, compactionThreshold, kernel);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open collection '" + name + "'", e);
+        }
+    }
+
+    private HnswIndex index(String collection) {
+        HnswIndex index = collections.get(collection);
+        if (index == null) {
+            throw new IllegalArgumentException("Collection '" + collection + "' does not exist");
+        }
+        return index;
+    }
+}
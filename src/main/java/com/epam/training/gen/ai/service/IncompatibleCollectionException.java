@@ -0,0 +1,18 @@
+package com.epam.training.gen.ai.service;
+
+/**
+ * Thrown by a {@link VectorStore} when an existing collection cannot be used as configured, for
+ * example because it holds vectors of another size. Unlike a store being unreachable, retrying
+ * does not help: the collection or the configuration has to change.
+ */
+public class IncompatibleCollectionException extends IllegalStateException {
+
+    /**
+     * Constructs a new {@code IncompatibleCollectionException}.
+     *
+     * @param message what does not match
+     */
+    public IncompatibleCollectionException(String message) {
+        super(message);
+    }
+}
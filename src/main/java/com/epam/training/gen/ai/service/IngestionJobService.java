@@ -0,0 +1,388 @@
+package com.epam.training.gen.ai.service;
+
+import com.epam.training.gen.ai.domain.IngestionJobStatus;
+import com.epam.training.gen.ai.domain.IngestionJobStatus.State;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Service running ingestion work as asynchronous jobs.
+ * <p>
+ * Jobs are executed by a fixed number of workers fed from a bounded queue; when the queue is full,
+ * new submissions are rejected instead of piling up. Every job tracks its progress so clients can
+ * poll it, and queued or running jobs can be cancelled. Finished jobs are retained for polling up
+ * to a configurable count, oldest first out. Work submitted for content that an active job is
+ * already ingesting joins that job instead of queueing another.
+ * <p>
+ * When virtual threads are enabled ({@code spring.threads.virtual.enabled} on Java 21), the workers
+ * are virtual threads: a job spends most of its time waiting on the embeddings API and the vector
+ * store, and the worker count still bounds how many jobs run at once.
+ */
+@Slf4j
+@Service
+public class IngestionJobService {
+
+    private final ThreadPoolExecutor executor;
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, IngestionJob> activeJobs = new ConcurrentHashMap<>();
+    private final Queue<String> finishedJobIds = new ConcurrentLinkedQueue<>();
+    private final int retainedJobs;
+
+    /**
+     * Constructs a new {@code IngestionJobService}.
+     *
+     * @param workers       the number of jobs running at the same time
+     * @param queueCapacity the number of jobs allowed to wait for a worker
+     * @param retainedJobs  the number of finished jobs kept for status polling
+     * @param environment   the environment deciding whether the workers are virtual threads
+     */
+    public IngestionJobService(
+            @Value("${ingestion.jobs.workers}") int workers,
+            @Value("${ingestion.jobs.queue-capacity}") int queueCapacity,
+            @Value("${ingestion.jobs.retained}") int retainedJobs,
+            Environment environment
+    ) {
+        ThreadFactory threadFactory = Threading.VIRTUAL.isActive(environment)
+                ? new VirtualThreadTaskExecutor("ingestion-job-").getVirtualThreadFactory()
+                : new CustomizableThreadFactory("ingestion-job-");
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retainedJobs = retainedJobs;
+    }
+
+    /**
+     * Submits ingestion work as a new job.
+     *
+     * @param source a short description of what is being ingested
+     * @param work   builds the ingestion pipeline, reporting to the given progress listener; it is
+     *               only invoked once a worker picks the job up
+     * @return the status of the newly queued job
+     * @throws RejectedExecutionException if the job queue is full
+     */
+    public IngestionJobStatus submit(String source, Function<IngestionProgress, Mono<Long>> work) {
+        return submit(source, null, work, () -> {
+        });
+    }
+
+    /**
+     * Submits ingestion work as a new job, unless a job for the same content is still queued or running.
+     * <p>
+     * Once {@code work} has returned a pipeline, the pipeline owns its resources and releases them
+     * when it terminates, whether it completes, fails or is cancelled. Until then they belong to
+     * the job, which runs {@code onAbandoned} exactly once if the pipeline is never built: when the
+     * job is rejected, cancelled while queued, dropped by {@link #shutdown()}, or when {@code work}
+     * itself throws. When a job with the same key is found queued or running, its status is returned
+     * and {@code onAbandoned} is not run, since the resources are shared with that job.
+     *
+     * @param source      a short description of what is being ingested
+     * @param key         identifies the content being ingested, or {@code null} to never share a job
+     * @param work        builds the ingestion pipeline, reporting to the given progress listener; it
+     *                    is only invoked once a worker picks the job up
+     * @param onAbandoned releases whatever {@code work} would have consumed
+     * @return the status of the newly queued job, or of the active job with the same key
+     * @throws RejectedExecutionException if the job queue is full
+     */
+    public IngestionJobStatus submit(String source, String key, Function<IngestionProgress, Mono<Long>> work,
+                                     Runnable onAbandoned) {
+        IngestionJob job = new IngestionJob(source, key, onAbandoned);
+        if (key != null) {
+            IngestionJob active = activeJobs.compute(key, (k, current) -> current != null && current.isActive() ? current : job);
+            if (active != job) {
+                log.info("Ingestion of '{}' joins job {} for the same content", source, active.id);
+                return active.toStatus();
+            }
+        }
+        jobs.put(job.id, job);
+        try {
+            job.task = new JobTask(job, work);
+            executor.execute(job.task);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            forget(job);
+            abandon(job);
+            throw e;
+        }
+        log.info("Ingestion job {} queued for '{}'", job.id, source);
+        return job.toStatus();
+    }
+
+    /**
+     * Returns the current status of a job.
+     *
+     * @param jobId the job identifier
+     * @return the job status, or empty if the job is unknown or no longer retained
+     */
+    public Optional<IngestionJobStatus> getStatus(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(IngestionJob::toStatus);
+    }
+
+    /**
+     * Returns the status of the job queued or running for a key, if any.
+     *
+     * @param key identifies the content being ingested
+     * @return the status of the active job, or empty if no job for the key is queued or running
+     */
+    public Optional<IngestionJobStatus> findActive(String key) {
+        return Optional.ofNullable(activeJobs.get(key))
+                .filter(IngestionJob::isActive)
+                .map(IngestionJob::toStatus);
+    }
+
+    /**
+     * Waits for a job to finish, whether it succeeds, fails or is cancelled.
+     *
+     * @param jobId   the job identifier
+     * @param timeout the longest time to wait
+     * @return the job status, which is still queued or running if the timeout elapsed, or empty if
+     * the job is unknown or no longer retained
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    Optional<IngestionJobStatus> awaitFinished(String jobId, Duration timeout) throws InterruptedException {
+        IngestionJob job = jobs.get(jobId);
+        if (job == null) {
+            return Optional.empty();
+        }
+        job.finished.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        return Optional.of(job.toStatus());
+    }
+
+    /**
+     * Cancels a queued or running job. Cancelling a finished job has no effect.
+     *
+     * @param jobId the job identifier
+     * @return the job status after cancellation, or empty if the job is unknown or no longer retained
+     */
+    public Optional<IngestionJobStatus> cancel(String jobId) {
+        IngestionJob job = jobs.get(jobId);
+        if (job == null) {
+            return Optional.empty();
+        }
+        if (job.finish(State.CANCELLED, "Cancelled by request")) {
+            CompletableFuture<Long> pipeline = job.pipeline;
+            if (pipeline != null) {
+                pipeline.cancel(true);
+            }
+            executor.remove(job.task);
+            if (job.startedAt == null) {
+                // The job can no longer start, so its work will never run
+                abandon(job);
+            }
+            retire(job);
+            log.info("Ingestion job {} cancelled", job.id);
+        }
+        return Optional.of(job.toStatus());
+    }
+
+    /**
+     * Stops the workers, cancelling every job still queued or running.
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (Runnable queued : executor.shutdownNow()) {
+            if (queued instanceof JobTask task && task.job.finish(State.CANCELLED, "Cancelled by shutdown")) {
+                abandon(task.job);
+                retire(task.job);
+            }
+        }
+    }
+
+    private void run(IngestionJob job, Function<IngestionProgress, Mono<Long>> work) {
+        if (!job.start()) {
+            abandon(job);
+            return;
+        }
+        try {
+            try {
+                job.pipeline = work.apply(job).toFuture();
+            } catch (RuntimeException e) {
+                abandon(job);
+                throw e;
+            }
+            if (job.state == State.CANCELLED) {
+                job.pipeline.cancel(true);
+                return;
+            }
+            long stored = job.pipeline.get();
+            if (stored == 0) {
+                job.finish(State.SKIPPED, "The content was already stored");
+                log.info("Ingestion job {} skipped, nothing new to store", job.id);
+            } else {
+                job.finish(State.SUCCEEDED, stored + " points stored");
+                log.info("Ingestion job {} succeeded, {} points stored", job.id, stored);
+            }
+        } catch (InterruptedException | CancellationException e) {
+            job.pipeline.cancel(true);
+            job.finish(State.CANCELLED, "Cancelled by request");
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            failJob(job, e.getCause());
+        } catch (RuntimeException e) {
+            failJob(job, e);
+        } finally {
+            retire(job);
+        }
+    }
+
+    private void abandon(IngestionJob job) {
+        if (!job.abandoned.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            job.onAbandoned.run();
+        } catch (RuntimeException e) {
+            log.warn("Cleanup of abandoned ingestion job {} failed", job.id, e);
+        }
+    }
+
+    private void failJob(IngestionJob job, Throwable error) {
+        if (job.finish(State.FAILED, error.getMessage())) {
+            log.error("Ingestion job {} failed", job.id, error);
+        }
+    }
+
+    private void retire(IngestionJob job) {
+        if (!job.retired.compareAndSet(false, true)) {
+            return;
+        }
+        job.finished.countDown();
+        forget(job);
+        finishedJobIds.add(job.id);
+        while (finishedJobIds.size() > retainedJobs) {
+            String oldest = finishedJobIds.poll();
+            if (oldest != null) {
+                jobs.remove(oldest);
+            }
+        }
+    }
+
+    private void forget(IngestionJob job) {
+        if (job.key != null) {
+            activeJobs.remove(job.key, job);
+        }
+    }
+
+    /**
+     * The queued unit of work of a job. Kept as the job's own runnable, rather than wrapped in a
+     * future, so that the jobs still queued at shutdown can be told apart.
+     */
+    private final class JobTask implements Runnable {
+
+        private final IngestionJob job;
+        private final Function<IngestionProgress, Mono<Long>> work;
+
+        private JobTask(IngestionJob job, Function<IngestionProgress, Mono<Long>> work) {
+            this.job = job;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            IngestionJobService.this.run(job, work);
+        }
+    }
+
+    /**
+     * Mutable state of a single job. State transitions are guarded by the job monitor so that a
+     * job finishing and a job being cancelled cannot both win.
+     */
+    private static final class IngestionJob implements IngestionProgress {
+
+        private final String id = UUID.randomUUID().toString();
+        private final String source;
+        private final String key;
+        private final Runnable onAbandoned;
+        private final Instant submittedAt = Instant.now();
+        private final AtomicLong chunksEmbedded = new AtomicLong();
+        private final AtomicLong pointsUpserted = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicBoolean retired = new AtomicBoolean();
+        private final AtomicBoolean abandoned = new AtomicBoolean();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile State state = State.QUEUED;
+        private volatile String message;
+        private volatile Instant startedAt;
+        private volatile Instant finishedAt;
+        private volatile Runnable task;
+        private volatile CompletableFuture<Long> pipeline;
+
+        private IngestionJob(String source, String key, Runnable onAbandoned) {
+            this.source = source;
+            this.key = key;
+            this.onAbandoned = onAbandoned;
+        }
+
+        private boolean isActive() {
+            State current = state;
+            return current == State.QUEUED || current == State.RUNNING;
+        }
+
+        private synchronized boolean start() {
+            if (state != State.QUEUED) {
+                return false;
+            }
+            state = State.RUNNING;
+            startedAt = Instant.now();
+            return true;
+        }
+
+        private synchronized boolean finish(State finalState, String finalMessage) {
+            if (state != State.QUEUED && state != State.RUNNING) {
+                return false;
+            }
+            state = finalState;
+            message = finalMessage;
+            finishedAt = Instant.now();
+            return true;
+        }
+
+        @Override
+        public void chunksEmbedded(int count) {
+            chunksEmbedded.addAndGet(count);
+        }
+
+        @Override
+        public void pointsUpserted(int count) {
+            pointsUpserted.addAndGet(count);
+        }
+
+        @Override
+        public void failed(Throwable error) {
+            failures.incrementAndGet();
+        }
+
+        private IngestionJobStatus toStatus() {
+            return new IngestionJobStatus(id, source, state, chunksEmbedded.get(), pointsUpserted.get(),
+                    failures.get(), message, submittedAt, startedAt, finishedAt);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.epam.training.gen.ai.service;
+
+/**
+ * Callback notified by the ingestion pipeline as a document moves through embedding and storage.
+ * <p>
+ * Calls may arrive from several threads at once, so implementations must be thread-safe.
+ */
+public interface IngestionProgress {
+
+    /**
+     * A progress listener that ignores every notification.
+     */
+    IngestionProgress NONE = new IngestionProgress() {
+    };
+
+    /**
+     * Called after a batch of chunks has been embedded.
+     *
+     * @param count the number of chunks in the batch
+     */
+    default void chunksEmbedded(int count) {
+    }
+
+    /**
+     * Called after a batch of points has been upserted into the vector store.
+     *
+     * @param count the number of points in the batch
+     */
+    default void pointsUpserted(int count) {
+    }
+
+    /**
+     * Called when an embedding or upsert batch fails.
+     *
+     * @param error the failure
+     */
+    default void failed(Throwable error) {
+    }
+}
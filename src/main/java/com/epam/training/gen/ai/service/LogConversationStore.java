@@ -0,0 +1,441 @@
+package com.epam.training.gen.ai.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link ConversationStore} that appends conversations to a segmented, memory-mapped log on local disk.
+ * <p>
+ * Every save appends the whole bounded state of one conversation as a record to the active
+ * {@link ConversationLogSegment}; once it is full, a new segment is started. The heap only holds an
+ * index from user to the location of their latest record, so it grows with the number of users
+ * rather than with their conversations, and records are only decoded when a conversation is
+ * loaded. On startup the segments are replayed to rebuild the index, so conversations survive
+ * restarts. Writes reach the page cache right away and the files when the OS writes them back,
+ * or when a segment is sealed or the store is closed.
+ * <p>
+ * Saving a conversation again leaves its earlier records dead. Every
+ * {@code chat.memory.store.compaction-interval}, a background pass forgets conversations saved
+ * longer than {@code chat.memory.store.retention} ago and rewrites every sealed segment whose
+ * share of live bytes has fallen below {@code chat.memory.store.compaction-threshold}: its live
+ * records are copied to the active segment and the file is deleted. Enabled with
+ * {@code chat.memory.store.type=log}; the number of stored conversations and the size of the log
+ * are published as the {@code chat.memory.store.conversations} and {@code chat.memory.store.disk-bytes} gauges.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "chat.memory.store.type", havingValue = "log")
+public class LogConversationStore implements ConversationStore {
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("conversations-(\\d{8})\\.log");
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long retentionMillis;
+    private final double compactionThreshold;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<Integer, ConversationLogSegment> segments = new TreeMap<>();
+    private final Map<String, Location> index = new HashMap<>();
+    private final ScheduledExecutorService compactor;
+    private ConversationLogSegment active;
+
+    /**
+     * Constructs a new {@code LogConversationStore}, replaying the existing segments.
+     *
+     * @param directory           the directory holding the segment files
+     * @param segmentSize         the capacity of a segment
+     * @param retention           how long a conversation is kept after it was last saved
+     * @param compactionInterval  how often the background compaction runs
+     * @param compactionThreshold the share of live bytes below which a sealed segment is rewritten
+     * @param meterRegistry       the registry the store gauges are published to
+     * @throws IOException if the directory cannot be created or a segment cannot be opened
+     */
+    public LogConversationStore(
+            @Value("${chat.memory.store.directory}") String directory,
+            @Value("${chat.memory.store.segment-size}") DataSize segmentSize,
+            @Value("${chat.memory.store.retention}") Duration retention,
+            @Value("${chat.memory.store.compaction-interval}") Duration compactionInterval,
+            @Value("${chat.memory.store.compaction-threshold}") double compactionThreshold,
+            MeterRegistry meterRegistry
+    ) throws IOException {
+        if (segmentSize.toBytes() < 1024 || segmentSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Conversation log segment size must be between 1 KB and 2 GB");
+        }
+        if (retention.isNegative() || retention.isZero() || compactionInterval.isNegative() || compactionInterval.isZero()) {
+            throw new IllegalArgumentException("Conversation retention and compaction interval must be positive");
+        }
+        if (compactionThreshold <= 0 || compactionThreshold >= 1) {
+            throw new IllegalArgumentException("Conversation log compaction threshold must be in (0, 1)");
+        }
+        this.directory = Paths.get(directory);
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.retentionMillis = retention.toMillis();
+        this.compactionThreshold = compactionThreshold;
+        Files.createDirectories(this.directory);
+        openExistingSegments();
+
+        this.compactor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("conversation-compaction-"));
+        compactor.scheduleWithFixedDelay(this::compactSafely, compactionInterval.toMillis(),
+                compactionInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+        Gauge.builder("chat.memory.store.conversations", this, LogConversationStore::conversations)
+                .description("Number of chat conversations in the conversation log")
+                .register(meterRegistry);
+        Gauge.builder("chat.memory.store.disk-bytes", this, LogConversationStore::diskBytes)
+                .description("Bytes written to the conversation log segments, live and dead")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public StoredConversation load(String userId) {
+        lock.readLock().lock();
+        try {
+            Location location = index.get(userId);
+            if (location == null || isExpired(location, System.currentTimeMillis())) {
+                return null;
+            }
+            return decode(segments.get(location.segment()).read(location.offset()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void save(String userId, StoredConversation conversation) {
+        long savedAt = System.currentTimeMillis();
+        ByteBuffer body = encode(userId, savedAt, conversation);
+        if (body.remaining() + ConversationLogSegment.HEADER_BYTES > segmentSize) {
+            throw new IllegalArgumentException("Conversation of " + body.remaining()
+                    + " bytes does not fit into a conversation log segment");
+        }
+        ConversationLogSegment sealed;
+        lock.writeLock().lock();
+        try {
+            ConversationLogSegment previous = active;
+            place(userId, append(body, savedAt));
+            sealed = previous != active ? previous : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to the conversation log", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        forceSealed(sealed);
+    }
+
+    /**
+     * Stops the compaction and closes every segment, writing the mapped changes through to the files.
+     *
+     * @throws IOException if a segment cannot be closed
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        compactor.shutdownNow();
+        lock.writeLock().lock();
+        try {
+            for (ConversationLogSegment segment : segments.values()) {
+                segment.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Forgets expired conversations and rewrites the sealed segments that are mostly dead.
+     * Writers are only held up while a single live record is copied.
+     *
+     * @throws IOException if a record cannot be copied or a segment cannot be deleted
+     */
+    void compact() throws IOException {
+        List<ConversationLogSegment> candidates = new ArrayList<>();
+        int expired = 0;
+        lock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            for (Iterator<Location> it = index.values().iterator(); it.hasNext(); ) {
+                Location location = it.next();
+                if (isExpired(location, now)) {
+                    segments.get(location.segment()).addLiveBytes(-recordBytes(location));
+                    it.remove();
+                    expired++;
+                }
+            }
+            for (ConversationLogSegment segment : segments.values()) {
+                if (segment != active && segment.liveBytes() < compactionThreshold * segment.size()) {
+                    candidates.add(segment);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // Sealed segments are never written again, so they can be scanned without the lock
+        for (ConversationLogSegment segment : candidates) {
+            int[] moved = {0};
+            IOException[] failure = {null};
+            segment.replay((offset, body) -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                String userId = readUserId(body.duplicate());
+                ConversationLogSegment sealed = null;
+                lock.writeLock().lock();
+                try {
+                    Location location = index.get(userId);
+                    if (location != null && location.segment() == segment.sequence() && location.offset() == offset) {
+                        ConversationLogSegment previous = active;
+                        place(userId, append(body, location.savedAt()));
+                        sealed = previous != active ? previous : null;
+                        moved[0]++;
+                    }
+                } catch (IOException e) {
+                    failure[0] = e;
+                    return;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                forceSealed(sealed);
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            lock.writeLock().lock();
+            try {
+                segments.remove(segment.sequence());
+                segment.delete();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Compacted conversation log segment {}, {} live conversations moved", segment.sequence(), moved[0]);
+        }
+        if (expired > 0) {
+            log.info("Forgot {} conversations past their retention", expired);
+        }
+    }
+
+    private void compactSafely() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            log.error("Conversation log compaction failed", e);
+        }
+    }
+
+    private void openExistingSegments() throws IOException {
+        List<Integer> sequences = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "conversations-*.log")) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    sequences.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        sequences.sort(null);
+        for (int sequence : sequences) {
+            ConversationLogSegment segment = new ConversationLogSegment(sequence, segmentFile(sequence), segmentSize);
+            segments.put(sequence, segment);
+            segment.replay((offset, body) -> place(readUserId(body.duplicate()),
+                    new Location(sequence, offset, body.remaining(), body.getLong(0))));
+            active = segment;
+        }
+        if (active == null) {
+            active = openSegment(0);
+        }
+        log.info("Conversation log opened with {} conversations in {} segments", index.size(), segments.size());
+    }
+
+    private ConversationLogSegment openSegment(int sequence) throws IOException {
+        ConversationLogSegment segment = new ConversationLogSegment(sequence, segmentFile(sequence), segmentSize);
+        segments.put(sequence, segment);
+        return segment;
+    }
+
+    private Path segmentFile(int sequence) {
+        return directory.resolve(String.format("conversations-%08d.log", sequence));
+    }
+
+    /**
+     * Appends a record body to the active segment, sealing it and starting a new one if it is full.
+     * Must be called with the write lock held; the sealed segment is forced by the caller through
+     * {@link #forceSealed} once the lock is released.
+     *
+     * @return the location of the record
+     */
+    private Location append(ByteBuffer body, long savedAt) throws IOException {
+        int offset = active.append(body);
+        if (offset < 0) {
+            active = openSegment(active.sequence() + 1);
+            offset = active.append(body);
+        }
+        return new Location(active.sequence(), offset, body.remaining(), savedAt);
+    }
+
+    /**
+     * Writes a segment an append has just sealed through to its file. Called without the lock,
+     * so that readers and writers are not held up while the whole segment is flushed; a sealed
+     * segment is never written again, and its records are already readable from the page cache, so
+     * a failure is logged only.
+     *
+     * @param sealed the sealed segment, or {@code null} if the append did not seal one
+     */
+    private void forceSealed(ConversationLogSegment sealed) {
+        if (sealed == null) {
+            return;
+        }
+        try {
+            sealed.force();
+        } catch (UncheckedIOException e) {
+            log.warn("Failed to write conversation log segment {} through to its file", sealed.sequence(), e);
+        }
+    }
+
+    /**
+     * Points the index of a user at a new record, moving its live bytes from the previous record.
+     * Must be called with the write lock held.
+     */
+    private void place(String userId, Location location) {
+        Location previous = index.put(userId, location);
+        if (previous != null) {
+            segments.get(previous.segment()).addLiveBytes(-recordBytes(previous));
+        }
+        segments.get(location.segment()).addLiveBytes(recordBytes(location));
+    }
+
+    private boolean isExpired(Location location, long now) {
+        return now - location.savedAt() > retentionMillis;
+    }
+
+    private int conversations() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long diskBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (ConversationLogSegment segment : segments.values()) {
+                bytes += segment.size();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long recordBytes(Location location) {
+        return ConversationLogSegment.HEADER_BYTES + location.length();
+    }
+
+    /**
+     * Encodes a conversation as a record body of
+     * {@code [savedAt:long][user][summary or length -1][turnCount:int]([prompt][reply])*},
+     * every string written as {@code [length:int][utf8]}.
+     */
+    private static ByteBuffer encode(String userId, long savedAt, StoredConversation conversation) {
+        byte[] user = userId.getBytes(StandardCharsets.UTF_8);
+        byte[] summary = conversation.summary() == null ? null : conversation.summary().getBytes(StandardCharsets.UTF_8);
+        List<byte[]> turns = new ArrayList<>(conversation.turns().size() * 2);
+        long length = Long.BYTES + Integer.BYTES + user.length + Integer.BYTES + (summary == null ? 0 : summary.length)
+                + Integer.BYTES;
+        for (StoredTurn turn : conversation.turns()) {
+            byte[] prompt = turn.prompt().getBytes(StandardCharsets.UTF_8);
+            byte[] reply = turn.reply().getBytes(StandardCharsets.UTF_8);
+            turns.add(prompt);
+            turns.add(reply);
+            length += 2L * Integer.BYTES + prompt.length + reply.length;
+        }
+        if (length > Integer.MAX_VALUE - ConversationLogSegment.HEADER_BYTES) {
+            throw new IllegalArgumentException("Conversation is too large to be stored");
+        }
+        ByteBuffer body = ByteBuffer.allocate((int) length);
+        body.putLong(savedAt).putInt(user.length).put(user);
+        if (summary == null) {
+            body.putInt(-1);
+        } else {
+            body.putInt(summary.length).put(summary);
+        }
+        body.putInt(conversation.turns().size());
+        for (byte[] text : turns) {
+            body.putInt(text.length).put(text);
+        }
+        return body.flip();
+    }
+
+    private static StoredConversation decode(ByteBuffer body) {
+        body.getLong();
+        readString(body);
+        int summaryLength = body.getInt();
+        String summary = null;
+        if (summaryLength >= 0) {
+            byte[] bytes = new byte[summaryLength];
+            body.get(bytes);
+            summary = new String(bytes, StandardCharsets.UTF_8);
+        }
+        int turnCount = body.getInt();
+        List<StoredTurn> turns = new ArrayList<>(turnCount);
+        for (int i = 0; i < turnCount; i++) {
+            turns.add(new StoredTurn(readString(body), readString(body)));
+        }
+        return new StoredConversation(summary, turns);
+    }
+
+    private static String readUserId(ByteBuffer body) {
+        body.getLong();
+        return readString(body);
+    }
+
+    private static String readString(ByteBuffer body) {
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Where the latest record of a user is stored, and when it was saved.
+     *
+     * @param segment the sequence of the segment holding the record
+     * @param offset  the offset of the record in the segment
+     * @param length  the length of the record body
+     * @param savedAt when the record was saved, in epoch milliseconds
+     */
+    private record Location(int segment, int offset, int length, long savedAt) {
+    }
+}
@@ -0,0 +1,229 @@
+package com.epam.training.gen.ai.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A memory-mapped file of fixed-size records, addressed by slot.
+ * <p>
+ * The file starts with a 16-byte header holding a magic number identifying the record format,
+ * a format parameter such as the vector dimension, the number of records and the record size,
+ * followed by the records back to back in little-endian order. Record {@code i} lives at a fixed
+ * offset, so it is read in place, and opening an existing file only maps it. An append writes the
+ * record first and then bumps the count in the header, so a record is never visible before it is
+ * fully written.
+ * <p>
+ * The file is mapped in regions of up to 64 MB, since a single mapping cannot exceed 2 GB, and
+ * grows one region at a time as records are appended. Reads may run concurrently with each
+ * other, but appends must be serialised against all other calls by the caller.
+ */
+final class MappedRecordFile implements Closeable {
+
+    private static final int HEADER_BYTES = 16;
+    private static final int PARAMETER_OFFSET = 4;
+    private static final int COUNT_OFFSET = 8;
+    private static final int RECORD_BYTES_OFFSET = 12;
+    private static final long REGION_TARGET_BYTES = 64L << 20;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int recordBytes;
+    private final int recordsPerRegion;
+    private final MappedByteBuffer header;
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+    private int count;
+
+    /**
+     * Opens a record file, creating it if it does not exist.
+     *
+     * @param file        the file
+     * @param magic       the magic number of the record format
+     * @param parameter   the format parameter the file must have been created with
+     * @param recordBytes the size of one record in bytes
+     * @throws IOException              if the file cannot be opened or mapped
+     * @throws IllegalArgumentException if the file has a different format, parameter or record size
+     */
+    MappedRecordFile(Path file, int magic, int parameter, int recordBytes) throws IOException {
+        this(file, magic, parameter, recordBytes, REGION_TARGET_BYTES);
+    }
+
+    /**
+     * Opens a record file mapped in regions of up to the given size rather than 64 MB, so that a
+     * few small records already span several regions.
+     *
+     * @param file              the file
+     * @param magic             the magic number of the record format
+     * @param parameter         the format parameter the file must have been created with
+     * @param recordBytes       the size of one record in bytes
+     * @param regionTargetBytes the largest size of a mapped region, rounded down to whole records
+     * @throws IOException              if the file cannot be opened or mapped
+     * @throws IllegalArgumentException if the file has a different format, parameter or record size
+     */
+    MappedRecordFile(Path file, int magic, int parameter, int recordBytes, long regionTargetBytes) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, CREATE, READ, WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (created) {
+                header.putInt(0, magic);
+                header.putInt(PARAMETER_OFFSET, parameter);
+                header.putInt(COUNT_OFFSET, 0);
+                header.putInt(RECORD_BYTES_OFFSET, recordBytes);
+            } else if (header.getInt(0) != magic || header.getInt(RECORD_BYTES_OFFSET) != recordBytes) {
+                throw new IllegalArgumentException(file + " does not hold records of the expected format");
+            } else if (header.getInt(PARAMETER_OFFSET) != parameter) {
+                throw new IllegalArgumentException(file + " was created for " + header.getInt(PARAMETER_OFFSET)
+                        + " dimensions, not " + parameter);
+            }
+            this.recordBytes = recordBytes;
+            this.recordsPerRegion = (int) Math.max(1, regionTargetBytes / recordBytes);
+            this.count = header.getInt(COUNT_OFFSET);
+            if (count > 0) {
+                mapRegion((count - 1) / recordsPerRegion);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the format parameter recorded in an existing record file.
+     *
+     * @param file  the file
+     * @param magic the expected magic number
+     * @return the format parameter
+     * @throws IOException if the file cannot be read or has a different format
+     */
+    static int readParameter(Path file, int magic) throws IOException {
+        try (FileChannel existing = FileChannel.open(file, READ)) {
+            MappedByteBuffer header = existing.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != magic) {
+                throw new IOException(file + " does not hold records of the expected format");
+            }
+            return header.getInt(PARAMETER_OFFSET);
+        }
+    }
+
+    /**
+     * Returns the number of records.
+     *
+     * @return the record count
+     */
+    int size() {
+        return count;
+    }
+
+    int recordsPerRegion() {
+        return recordsPerRegion;
+    }
+
+    /**
+     * Returns a mapped region. Every region holding a record is mapped.
+     *
+     * @param index the region index, {@code slot / recordsPerRegion()}
+     * @return the little-endian region buffer
+     */
+    ByteBuffer region(int index) {
+        return regions.get(index);
+    }
+
+    /**
+     * Returns the mapped region a record lives in.
+     *
+     * @param slot the record slot
+     * @return the little-endian region buffer
+     */
+    ByteBuffer regionOf(int slot) {
+        return regions.get(slot / recordsPerRegion);
+    }
+
+    /**
+     * Returns the byte offset of a record within its region.
+     *
+     * @param slot the record slot
+     * @return the byte offset
+     */
+    int offsetOf(int slot) {
+        return (slot % recordsPerRegion) * recordBytes;
+    }
+
+    /**
+     * Maps the region for the next record, so that it can be written through {@link #regionOf(int)},
+     * and returns its slot. The record only becomes part of the file with {@link #commitAppend()}.
+     *
+     * @return the slot of the next record
+     * @throws IOException if the file cannot be extended
+     */
+    int prepareAppend() throws IOException {
+        mapRegion(count / recordsPerRegion);
+        return count;
+    }
+
+    /**
+     * Makes the record prepared by {@link #prepareAppend()} part of the file.
+     */
+    void commitAppend() {
+        count++;
+        header.putInt(COUNT_OFFSET, count);
+    }
+
+    /**
+     * Drops the records from {@code newCount} onwards.
+     *
+     * @param newCount the number of records to keep
+     */
+    void truncate(int newCount) {
+        if (newCount < count) {
+            count = newCount;
+            header.putInt(COUNT_OFFSET, count);
+        }
+    }
+
+    /**
+     * Flushes written records to disk and closes the file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        for (MappedByteBuffer region : regions) {
+            region.force();
+        }
+        header.force();
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+
+    /**
+     * Maps the given region and every region before it, if not mapped yet. Mapping past the end
+     * of the file extends the file.
+     */
+    private void mapRegion(int index) throws IOException {
+        while (regions.size() <= index) {
+            long regionBytes = (long) recordsPerRegion * recordBytes;
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_BYTES + regions.size() * regionBytes, regionBytes);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            regions.add(mapped);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.epam.training.gen.ai.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-dimension float32 vectors stored contiguously in a {@link MappedRecordFile}.
+ * <p>
+ * Vector {@code i} lives at a fixed offset and is bulk-copied into a per-thread scratch array for
+ * scoring with the configured {@link SimilarityKernel}, so no per-vector object is ever created;
+ * the Java heap only holds one buffer per mapped region, whatever the number of vectors. Reads
+ * may run concurrently with each other, but appends must be serialised against all other calls
+ * by the caller.
+ */
+final class MappedVectorStorage implements Closeable {
+
+    private static final int MAGIC = 0x56454332;
+
+    private final MappedRecordFile file;
+    private final int dimensions;
+    private final SimilarityKernel kernel;
+    private final ThreadLocal<float[][]> scratch;
+    private final List<FloatBuffer> regions = new ArrayList<>();
+
+    /**
+     * Opens the vector file, creating it if it does not exist.
+     *
+     * @param file       the vector file
+     * @param dimensions the number of dimensions of every vector
+     * @param kernel     the kernel used to score stored vectors
+     * @throws IOException              if the file cannot be opened or mapped
+     * @throws IllegalArgumentException if the file holds vectors of a different dimension or is not a vector file
+     */
+    MappedVectorStorage(Path file, int dimensions, SimilarityKernel kernel) throws IOException {
+        this(new MappedRecordFile(file, MAGIC, dimensions, dimensions * Float.BYTES), dimensions, kernel);
+    }
+
+    /**
+     * Opens the vector file mapped in regions of up to the given size, see
+     * {@link MappedRecordFile#MappedRecordFile(Path, int, int, int, long)}.
+     *
+     * @param file              the vector file
+     * @param dimensions        the number of dimensions of every vector
+     * @param kernel            the kernel used to score stored vectors
+     * @param regionTargetBytes the largest size of a mapped region
+     * @throws IOException              if the file cannot be opened or mapped
+     * @throws IllegalArgumentException if the file holds vectors of a different dimension or is not a vector file
+     */
+    MappedVectorStorage(Path file, int dimensions, SimilarityKernel kernel, long regionTargetBytes) throws IOException {
+        this(new MappedRecordFile(file, MAGIC, dimensions, dimensions * Float.BYTES, regionTargetBytes), dimensions, kernel);
+    }
+
+    private MappedVectorStorage(MappedRecordFile file, int dimensions, SimilarityKernel kernel) {
+        this.file = file;
+        this.dimensions = dimensions;
+        this.kernel = kernel;
+        this.scratch = ThreadLocal.withInitial(() -> new float[2][dimensions]);
+        if (this.file.size() > 0) {
+            viewRegions(this.file.size() - 1);
+        }
+    }
+
+    /**
+     * Reads the number of dimensions recorded in an existing vector file.
+     *
+     * @param file the vector file
+     * @return the number of dimensions
+     * @throws IOException if the file cannot be read or is not a vector file
+     */
+    static int readDimensions(Path file) throws IOException {
+        return MappedRecordFile.readParameter(file, MAGIC);
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Returns the number of stored vectors.
+     *
+     * @return the vector count
+     */
+    int size() {
+        return file.size();
+    }
+
+    /**
+     * Appends a vector.
+     *
+     * @param vector the vector, of exactly {@link #dimensions()} values
+     * @return the slot the vector was stored in
+     * @throws IOException if the file cannot be extended
+     */
+    int append(float[] vector) throws IOException {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected a vector of " + dimensions + " dimensions, got " + vector.length);
+        }
+        int slot = file.prepareAppend();
+        viewRegions(slot);
+        regions.get(slot / file.recordsPerRegion()).put(floatOffset(slot), vector);
+        file.commitAppend();
+        return slot;
+    }
+
+    /**
+     * Copies a stored vector into an array.
+     *
+     * @param slot   the slot of the vector
+     * @param target the array to copy into, of at least {@link #dimensions()} values
+     */
+    void read(int slot, float[] target) {
+        regions.get(slot / file.recordsPerRegion()).get(floatOffset(slot), target, 0, dimensions);
+    }
+
+    /**
+     * Computes the dot product of a stored vector and a query vector.
+     *
+     * @param slot  the slot of the stored vector
+     * @param query the query vector
+     * @return the dot product
+     */
+    float dot(int slot, float[] query) {
+        float[] stored = scratch.get()[0];
+        read(slot, stored);
+        return kernel.dot(stored, query);
+    }
+
+    /**
+     * Computes the dot product of two stored vectors.
+     *
+     * @param a the slot of the first vector
+     * @param b the slot of the second vector
+     * @return the dot product
+     */
+    float dot(int a, int b) {
+        float[][] buffers = scratch.get();
+        read(a, buffers[0]);
+        read(b, buffers[1]);
+        return kernel.dot(buffers[0], buffers[1]);
+    }
+
+    /**
+     * Flushes written vectors to disk and closes the file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private int floatOffset(int slot) {
+        return file.offsetOf(slot) / Float.BYTES;
+    }
+
+    /**
+     * Creates float views of every mapped region up to the one holding {@code slot}.
+     */
+    private void viewRegions(int slot) {
+        for (int index = regions.size(); index <= slot / file.recordsPerRegion(); index++) {
+            regions.add(file.region(index).asFloatBuffer());
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.epam.training.gen.ai.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadMemoryMappedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Extracts text from PDF files as a stream of page windows.
+ * <p>
+ * The page range is split into windows of {@code rag.extraction.page-window} pages, and up to
+ * {@code rag.extraction.parallelism} windows are stripped at the same time on a dedicated
+ * fork-join pool. Every worker uses its own {@link PDDocument} handle and {@link PDFTextStripper},
+ * since neither is thread-safe, and windows are re-emitted in page order.
+ */
+@Slf4j
+@Component
+public class PdfTextExtractor {
+
+    private final int pageWindow;
+    private final int parallelism;
+    private final ForkJoinPool extractionPool;
+    private final Scheduler extractionScheduler;
+
+    /**
+     * Constructs a new {@code PdfTextExtractor}.
+     *
+     * @param pageWindow  the number of pages stripped by one task
+     * @param parallelism the number of page windows stripped concurrently
+     */
+    public PdfTextExtractor(
+            @Value("${rag.extraction.page-window}") int pageWindow,
+            @Value("${rag.extraction.parallelism}") int parallelism
+    ) {
+        if (pageWindow < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Page window and extraction parallelism must be positive");
+        }
+        this.pageWindow = pageWindow;
+        this.parallelism = parallelism;
+        this.extractionPool = new ForkJoinPool(parallelism);
+        this.extractionScheduler = Schedulers.fromExecutorService(extractionPool, "pdf-extraction");
+    }
+
+    /**
+     * Extracts the text of a PDF file as a stream of page windows.
+     * <p>
+     * Windows are only stripped when downstream asks for more text, so memory is proportional to
+     * the window size and parallelism rather than to the file. Throughput is logged in pages per
+     * second once the whole document has been read, which makes it easy to compare parallelism
+     * settings on the same file.
+     *
+     * @param file the PDF file to extract text from
+     * @return a {@link Flux} emitting the text of each page window, in page order
+     */
+    public Flux<String> extractText(Path file) {
+        return Flux.using(
+                        () -> new DocumentHandles(file),
+                        handles -> {
+                            int pageCount = handles.pageCount();
+                            int windows = (pageCount + pageWindow - 1) / pageWindow;
+                            long started = System.nanoTime();
+                            return Flux.range(0, windows)
+                                    .flatMapSequential(window -> {
+                                        int startPage = window * pageWindow + 1;
+                                        int endPage = Math.min(startPage + pageWindow - 1, pageCount);
+                                        return Mono.fromCallable(() -> handles.extract(startPage, endPage))
+                                                .subscribeOn(extractionScheduler);
+                                    }, parallelism, 1)
+                                    .doOnComplete(() -> {
+                                        double seconds = (System.nanoTime() - started) / 1e9;
+                                        log.info("Extracted {} pages of {} in {} s ({} pages/s, parallelism {})",
+                                                pageCount, file.getFileName(), String.format("%.2f", seconds),
+                                                String.format("%.1f", pageCount / Math.max(seconds, 1e-9)), parallelism);
+                                    });
+                        },
+                        DocumentHandles::close)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Shuts down the extraction pool.
+     */
+    @PreDestroy
+    public void shutdown() {
+        extractionScheduler.dispose();
+        extractionPool.shutdown();
+    }
+
+    /**
+     * A set of independent document handles for one file. A worker borrows an idle handle for
+     * the duration of one window, opening a new one if every handle is busy, so at most one
+     * handle per concurrent worker is ever opened. Handles parse the file through a memory
+     * mapping, so every handle shares the page cache instead of reading the file again.
+     * <p>
+     * Closing may race with workers still stripping a window, since the stream is cleaned up as
+     * soon as it is cancelled. Idle handles are closed right away, borrowed ones when they are
+     * returned, and no handle is borrowed or opened once the set is closed, so none is closed while
+     * in use and none outlives the set.
+     */
+    private static final class DocumentHandles {
+
+        private final Path file;
+        private final Lock lock = new ReentrantLock();
+        private final Deque<PDDocument> idle = new ArrayDeque<>();
+        private final int pageCount;
+        private boolean closed;
+
+        private DocumentHandles(Path file) throws IOException {
+            this.file = file;
+            PDDocument first = open();
+            this.pageCount = first.getNumberOfPages();
+            idle.add(first);
+        }
+
+        private int pageCount() {
+            return pageCount;
+        }
+
+        private String extract(int startPage, int endPage) throws IOException {
+            PDDocument document = borrow();
+            try {
+                PDFTextStripper stripper = new PDFTextStripper();
+                stripper.setStartPage(startPage);
+                stripper.setEndPage(endPage);
+                return stripper.getText(document);
+            } catch (IOException e) {
+                throw new IOException("Failed to extract pages " + startPage + "-" + endPage
+                        + " of " + file.getFileName(), e);
+            } finally {
+                giveBack(document);
+            }
+        }
+
+        private PDDocument borrow() throws IOException {
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new CancellationException("Extraction of " + file.getFileName() + " was closed");
+                }
+                PDDocument document = idle.poll();
+                if (document != null) {
+                    return document;
+                }
+            } finally {
+                lock.unlock();
+            }
+            // Opened outside the lock; if the set is closed meanwhile, the handle is closed when given back
+            return open();
+        }
+
+        private void giveBack(PDDocument document) {
+            lock.lock();
+            try {
+                if (!closed) {
+                    idle.push(document);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            closeQuietly(document);
+        }
+
+        private PDDocument open() throws IOException {
+            RandomAccessReadMemoryMappedFile source = new RandomAccessReadMemoryMappedFile(file);
+            try {
+                return Loader.loadPDF(source);
+            } catch (IOException e) {
+                source.close();
+                throw e;
+            }
+        }
+
+        private void close() {
+            List<PDDocument> unused;
+            lock.lock();
+            try {
+                closed = true;
+                unused = List.copyOf(idle);
+                idle.clear();
+            } finally {
+                lock.unlock();
+            }
+            unused.forEach(this::closeQuietly);
+        }
+
+        private void closeQuietly(PDDocument document) {
+            try {
+                document.close();
+            } catch (IOException e) {
+                log.warn("Failed to close PDF document {}", file.getFileName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.epam.training.gen.ai.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only log of point identifiers and payloads for an in-process collection.
+ * <p>
+ * Every upsert appends a record linking a point identifier to the slot of its vector in the
+ * {@link MappedVectorStorage} together with its payload, and every delete appends a tombstone.
+ * Replaying the log yields the latest state of every point. Payloads are not kept in memory:
+ * callers remember the offset of a record and read the payload back only when it is returned
+ * from a search. A torn record at the end of the file, left by a crash, is discarded on replay.
+ */
+final class PointJournal implements Closeable {
+
+    private static final byte UPSERT = 1;
+    private static final byte DELETE = 2;
+
+    private final FileChannel channel;
+    private long size;
+
+    /**
+     * Opens the journal, creating it if it does not exist.
+     *
+     * @param file the journal file
+     * @throws IOException if the file cannot be opened
+     */
+    PointJournal(Path file) throws IOException {
+        this.channel = FileChannel.open(file, CREATE, READ, WRITE);
+        this.size = channel.size();
+    }
+
+    /**
+     * Reads every record in the journal, in write order, truncating a torn record at the end.
+     *
+     * @return the journal entries
+     * @throws IOException if the journal cannot be read
+     */
+    List<Entry> replay() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+        long position = 0;
+        while (position + Integer.BYTES <= size) {
+            lengthBuffer.clear();
+            readFully(lengthBuffer, position);
+            int length = lengthBuffer.flip().getInt();
+            if (length < 1 || position + Integer.BYTES + length > size) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(length);
+            readFully(record, position + Integer.BYTES);
+            record.flip();
+            byte type = record.get();
+            int slot = record.getInt();
+            String id = readString(record);
+            entries.add(new Entry(id, type == DELETE ? -1 : slot, position));
+            position += Integer.BYTES + length;
+        }
+        if (position < size) {
+            channel.truncate(position);
+            size = position;
+        }
+        return entries;
+    }
+
+    /**
+     * Appends an upsert record.
+     *
+     * @param id      the point identifier
+     * @param slot    the slot of the point's vector
+     * @param payload the point payload
+     * @return the offset of the record, to be passed to {@link #readPayload(long)}
+     * @throws IOException if the record cannot be written
+     */
+    long appendUpsert(String id, int slot, Map<String, String> payload) throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> fields = new ArrayList<>(payload.size() * 2);
+        int length = 1 + Integer.BYTES + Integer.BYTES + idBytes.length + Integer.BYTES;
+        for (Map.Entry<String, String> field : payload.entrySet()) {
+            byte[] key = field.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] value = field.getValue().getBytes(StandardCharsets.UTF_8);
+            fields.add(key);
+            fields.add(value);
+            length += 2 * Integer.BYTES + key.length + value.length;
+        }
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length);
+        record.putInt(length).put(UPSERT).putInt(slot).putInt(idBytes.length).put(idBytes).putInt(payload.size());
+        for (byte[] field : fields) {
+            record.putInt(field.length).put(field);
+        }
+        return append(record.flip());
+    }
+
+    /**
+     * Appends a delete record.
+     *
+     * @param id the point identifier
+     * @throws IOException if the record cannot be written
+     */
+    void appendDelete(String id) throws IOException {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        int length = 1 + Integer.BYTES + Integer.BYTES + idBytes.length;
+        ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length);
+        record.putInt(length).put(DELETE).putInt(-1).putInt(idBytes.length).put(idBytes);
+        append(record.flip());
+    }
+
+    /**
+     * Reads the payload of an upsert record.
+     *
+     * @param offset the offset returned by {@link #appendUpsert(String, int, Map)} or {@link Entry#offset()}
+     * @return the payload
+     * @throws IOException if the record cannot be read
+     */
+    Map<String, String> readPayload(long offset) throws IOException {
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(Integer.BYTES);
+        readFully(lengthBuffer, offset);
+        ByteBuffer record = ByteBuffer.allocate(lengthBuffer.flip().getInt());
+        readFully(record, offset + Integer.BYTES);
+        record.flip();
+        record.position(1 + Integer.BYTES);
+        readString(record);
+        int fields = record.getInt();
+        Map<String, String> payload = new HashMap<>(fields * 2);
+        for (int i = 0; i < fields; i++) {
+            payload.put(readString(record), readString(record));
+        }
+        return payload;
+    }
+
+    /**
+     * Closes the journal.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    private long append(ByteBuffer record) throws IOException {
+        long offset = size;
+        long position = offset;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        size = position;
+        return offset;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of journal at offset " + position);
+            }
+            position += read;
+        }
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One journal record.
+     *
+     * @param id     the point identifier
+     * @param slot   the slot of the point's vector, or {@code -1} for a delete
+     * @param offset the offset of the record in the journal
+     */
+    record Entry(String id, int slot, long offset) {
+    }
+}
@@ -0,0 +1,407 @@
+package com.epam.training.gen.ai.service;
+
+import com.epam.training.gen.ai.configuration.QdrantCollectionProperties;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.grpc.Collections;
+import io.qdrant.client.grpc.JsonWithInt;
+import io.qdrant.client.grpc.Points;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static io.qdrant.client.PointIdFactory.id;
+import static io.qdrant.client.ValueFactory.value;
+import static io.qdrant.client.WithPayloadSelectorFactory.enable;
+import static io.qdrant.client.WithPayloadSelectorFactory.include;
+
+/**
+ * {@link VectorStore} backed by a Qdrant server, reached over gRPC.
+ * <p>
+ * Point identifiers must be UUIDs, which is what the ingestion pipeline derives for its chunks.
+ * Collections are created with the storage, HNSW and quantization settings of
+ * {@link QdrantCollectionProperties}; for large corpora, keeping the original vectors on disk with
+ * quantized vectors pinned in RAM cuts the server memory footprint to a fraction. Enabled with
+ * {@code vector-store.type=qdrant}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "vector-store.type", havingValue = "qdrant")
+public class QdrantVectorStore implements VectorStore {
+
+    private final QdrantClient qdrantClient;
+    private final QdrantCollectionProperties properties;
+    private final Points.SearchParams searchParams;
+    private final boolean upsertWait;
+    private final Map<String, Mono<Void>> collectionsReady = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new {@code QdrantVectorStore}.
+     *
+     * @param qdrantClient the client for interacting with the Qdrant vector database
+     * @param properties   the settings of created collections
+     * @param upsertWait   whether each upsert waits until Qdrant has applied the points
+     */
+    public QdrantVectorStore(
+            QdrantClient qdrantClient,
+            QdrantCollectionProperties properties,
+            @Value("${ingestion.upsert-wait}") boolean upsertWait
+    ) {
+        String quantization = properties.getQuantization().getType();
+        if (!List.of("none", "scalar", "binary").contains(quantization)) {
+            throw new IllegalArgumentException("Unknown Qdrant quantization '" + quantization
+                    + "', expected none, scalar or binary");
+        }
+        this.qdrantClient = qdrantClient;
+        this.properties = properties;
+        this.searchParams = toSearchParams(properties);
+        this.upsertWait = upsertWait;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The check runs once per collection: every caller that arrives while it is in flight shares
+     * it, and once it succeeds its outcome is reused without calling Qdrant again. A failed check
+     * is forgotten so that the next caller retries it.
+     * <p>
+     * An existing collection fails the check with an {@link IncompatibleCollectionException} if its
+     * vectors do not have the given size or do not use cosine distance. Storage, HNSW and
+     * quantization settings that differ from the configuration are logged as warnings, or fail the
+     * check too with {@code vector-store.qdrant.fail-on-mismatch}.
+     */
+    @Override
+    public Mono<Void> createCollection(String collection, int dimensions) {
+        return Mono.defer(() -> collectionsReady.computeIfAbsent(collection, name -> checkOrCreateCollection(name, dimensions)
+                .doOnError(ex -> collectionsReady.remove(name))
+                .cache()));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * With {@code ingestion.upsert-wait} disabled, Qdrant acknowledges the batch as soon as it is
+     * written to its log rather than once it is indexed, which speeds up bulk loads at the cost
+     * of the points becoming searchable slightly later.
+     */
+    @Override
+    public Mono<Long> upsert(String collection, List<VectorRecord> records) {
+        List<Points.PointStruct> points = records.stream().map(QdrantVectorStore::toPointStruct).toList();
+        return toMono(() -> qdrantClient.upsertAsync(Points.UpsertPoints.newBuilder()
+                        .setCollectionName(collection)
+                        .addAllPoints(points)
+                        .setWait(upsertWait)
+                        .build()))
+                .map(updateResult -> {
+                    log.info("Upsert of {} points status: {}", points.size(), updateResult.getStatus().name());
+                    return (long) points.size();
+                });
+    }
+
+    @Override
+    public Mono<Set<String>> existingIds(String collection, Collection<String> ids) {
+        List<Points.PointId> pointIds = ids.stream().map(QdrantVectorStore::toPointId).toList();
+        return toMono(() -> qdrantClient.retrieveAsync(collection, pointIds, false, false, null))
+                .map(points -> points.stream()
+                        .map(point -> fromPointId(point.getId()))
+                        .collect(Collectors.toSet()));
+    }
+
+    @Override
+    public Mono<List<VectorMatch>> search(String collection, float[] query, SearchOptions options) {
+        Points.SearchPoints.Builder request = Points.SearchPoints.newBuilder();
+        for (float value : query) {
+            request.addVector(value);
+        }
+        return toMono(() -> qdrantClient.searchAsync(
+                        request
+                                .setCollectionName(collection)
+                                .setLimit(options.limit())
+                                .setOffset(options.offset())
+                                .setWithPayload(toPayloadSelector(options))
+                                .setScoreThreshold(options.scoreThreshold())
+                                .setParams(searchParams)
+                                .build()))
+                .map(points -> points.stream()
+                        .map(point -> new VectorMatch(fromPointId(point.getId()), point.getScore(),
+                                fromPayload(point.getPayloadMap())))
+                        .toList());
+    }
+
+    @Override
+    public Mono<Void> delete(String collection, Collection<String> ids) {
+        List<Points.PointId> pointIds = ids.stream().map(QdrantVectorStore::toPointId).toList();
+        return toMono(() -> qdrantClient.deleteAsync(collection, pointIds))
+                .doOnNext(updateResult -> log.info("Delete of {} points status: {}", pointIds.size(),
+                        updateResult.getStatus().name()))
+                .then();
+    }
+
+    /**
+     * Checks whether a collection exists and creates it if not.
+     * <p>
+     * Another instance may create the collection between the check and the creation. A failed
+     * creation is therefore followed by a second existence check, and only fails if the collection
+     * is still missing. A collection found to exist, either way, is validated against the
+     * configuration, since the other instance may have created it with different settings.
+     *
+     * @param collection the collection name
+     * @param dimensions the number of dimensions of the vectors in the collection
+     * @return a {@link Mono} completing once the collection is available
+     */
+    private Mono<Void> checkOrCreateCollection(String collection, int dimensions) {
+        return toMono(() -> qdrantClient.collectionExistsAsync(collection))
+                .flatMap(exists -> {
+                    if (exists) {
+                        return validateExistingCollection(collection, dimensions);
+                    }
+                    log.info("Collection '{}' not found. Creating a new collection...", collection);
+                    return toMono(() -> qdrantClient.createCollectionAsync(toCreateCollection(collection, dimensions)))
+                            .doOnNext(result -> log.info("Collection was created: [{}]", result.getResult()))
+                            .then()
+                            .onErrorResume(ex -> toMono(() -> qdrantClient.collectionExistsAsync(collection))
+                                    .flatMap(created -> {
+                                        if (!created) {
+                                            return Mono.error(ex);
+                                        }
+                                        log.info("Collection '{}' was created concurrently", collection);
+                                        return validateExistingCollection(collection, dimensions);
+                                    }));
+                });
+    }
+
+    /**
+     * Fetches the info of an existing collection and checks it against the configuration.
+     *
+     * @param collection the collection name
+     * @param dimensions the expected number of dimensions of the vectors
+     * @return a {@link Mono} completing if the collection is usable, see {@link #validateCollection}
+     */
+    private Mono<Void> validateExistingCollection(String collection, int dimensions) {
+        return toMono(() -> qdrantClient.getCollectionInfoAsync(collection))
+                .flatMap(info -> validateCollection(collection, dimensions, info));
+    }
+
+    /**
+     * Builds the creation request of a collection from the configured settings.
+     *
+     * @param collection the collection name
+     * @param dimensions the number of dimensions of the vectors in the collection
+     * @return the creation request
+     */
+    private Collections.CreateCollection toCreateCollection(String collection, int dimensions) {
+        QdrantCollectionProperties.Hnsw hnsw = properties.getHnsw();
+        QdrantCollectionProperties.Quantization quantization = properties.getQuantization();
+        Collections.CreateCollection.Builder request = Collections.CreateCollection.newBuilder()
+                .setCollectionName(collection)
+                .setVectorsConfig(Collections.VectorsConfig.newBuilder()
+                        .setParams(Collections.VectorParams.newBuilder()
+                                .setDistance(Collections.Distance.Cosine)
+                                .setSize(dimensions)
+                                .setOnDisk(properties.isOnDiskVectors())))
+                .setHnswConfig(Collections.HnswConfigDiff.newBuilder()
+                        .setM(hnsw.getM())
+                        .setEfConstruct(hnsw.getEfConstruct())
+                        .setOnDisk(hnsw.isOnDisk()))
+                .setOnDiskPayload(properties.isOnDiskPayload());
+        switch (quantization.getType()) {
+            case "scalar" -> request.setQuantizationConfig(Collections.QuantizationConfig.newBuilder()
+                    .setScalar(Collections.ScalarQuantization.newBuilder()
+                            .setType(Collections.QuantizationType.Int8)
+                            .setQuantile(quantization.getQuantile())
+                            .setAlwaysRam(quantization.isAlwaysRam())));
+            case "binary" -> request.setQuantizationConfig(Collections.QuantizationConfig.newBuilder()
+                    .setBinary(Collections.BinaryQuantization.newBuilder()
+                            .setAlwaysRam(quantization.isAlwaysRam())));
+            default -> {
+            }
+        }
+        return request.build();
+    }
+
+    /**
+     * Checks an existing collection against the configuration.
+     *
+     * @param collection the collection name
+     * @param dimensions the expected number of dimensions of the vectors
+     * @param info       the collection info reported by Qdrant
+     * @return a {@link Mono} completing if the collection is usable, or failing with an
+     * {@link IncompatibleCollectionException} if its vectors are incompatible or, when mismatches
+     * are configured to fail, if any setting differs
+     */
+    private Mono<Void> validateCollection(String collection, int dimensions, Collections.CollectionInfo info) {
+        Collections.CollectionConfig config = info.getConfig();
+        if (!config.getParams().getVectorsConfig().hasParams()) {
+            return Mono.error(new IncompatibleCollectionException("Collection '" + collection
+                    + "' uses named vectors, which are not supported"));
+        }
+        Collections.VectorParams vectors = config.getParams().getVectorsConfig().getParams();
+        if (vectors.getSize() != dimensions || vectors.getDistance() != Collections.Distance.Cosine) {
+            return Mono.error(new IncompatibleCollectionException(String.format(
+                    "Collection '%s' holds %d-dimension %s vectors, but %d-dimension Cosine vectors are configured",
+                    collection, vectors.getSize(), vectors.getDistance(), dimensions)));
+        }
+        QdrantCollectionProperties.Hnsw hnsw = properties.getHnsw();
+        List<String> differences = new ArrayList<>();
+        compare(differences, "on-disk-vectors", vectors.getOnDisk(), properties.isOnDiskVectors());
+        compare(differences, "on-disk-payload", config.getParams().getOnDiskPayload(), properties.isOnDiskPayload());
+        compare(differences, "hnsw.m", config.getHnswConfig().getM(), (long) hnsw.getM());
+        compare(differences, "hnsw.ef-construct", config.getHnswConfig().getEfConstruct(), (long) hnsw.getEfConstruct());
+        compare(differences, "hnsw.on-disk", config.getHnswConfig().getOnDisk(), hnsw.isOnDisk());
+        compare(differences, "quantization.type",
+                quantizationType(vectors.hasQuantizationConfig() ? vectors.getQuantizationConfig() : config.getQuantizationConfig()),
+                properties.getQuantization().getType());
+        if (differences.isEmpty()) {
+            log.info("Collection '{}' matches the configured settings, {} points", collection, info.getPointsCount());
+        } else if (properties.isFailOnMismatch()) {
+            return Mono.error(new IncompatibleCollectionException("Collection '" + collection
+                    + "' differs from the configured settings: " + String.join("; ", differences)));
+        } else {
+            log.warn("Collection '{}' differs from the configured settings, which only apply to new collections: {}",
+                    collection, String.join("; ", differences));
+        }
+        return Mono.empty();
+    }
+
+    private static void compare(List<String> differences, String setting, Object actual, Object configured) {
+        if (!actual.equals(configured)) {
+            differences.add(setting + " is " + actual + ", configured " + configured);
+        }
+    }
+
+    private static String quantizationType(Collections.QuantizationConfig config) {
+        return switch (config.getQuantizationCase()) {
+            case SCALAR -> "scalar";
+            case BINARY -> "binary";
+            case PRODUCT -> "product";
+            default -> "none";
+        };
+    }
+
+    /**
+     * Builds the search parameters from the configured settings: the HNSW candidate list size,
+     * and rescoring of candidates found on quantized vectors.
+     *
+     * @param properties the collection settings
+     * @return the search parameters
+     */
+    private static Points.SearchParams toSearchParams(QdrantCollectionProperties properties) {
+        Points.SearchParams.Builder params = Points.SearchParams.newBuilder();
+        if (properties.getHnsw().getEfSearch() != null) {
+            params.setHnswEf(properties.getHnsw().getEfSearch());
+        }
+        QdrantCollectionProperties.Quantization quantization = properties.getQuantization();
+        if (!quantization.getType().equals("none")) {
+            params.setQuantization(Points.QuantizationSearchParams.newBuilder()
+                    .setRescore(quantization.isRescore())
+                    .setOversampling(quantization.getOversampling()));
+        }
+        return params.build();
+    }
+
+    /**
+     * Converts a record into a Qdrant point structure.
+     *
+     * @param record the record
+     * @return the point structure
+     */
+    private static Points.PointStruct toPointStruct(VectorRecord record) {
+        Map<String, JsonWithInt.Value> payload = new HashMap<>();
+        record.payload().forEach((key, text) -> payload.put(key, value(text)));
+        return Points.PointStruct.newBuilder()
+                .setId(toPointId(record.id()))
+                .setVectors(Points.Vectors.newBuilder().setVector(toVector(record.vector())))
+                .putAllPayload(payload)
+                .build();
+    }
+
+    /**
+     * Selects the payload fields Qdrant returns with search results, so unselected fields never
+     * leave the server.
+     *
+     * @param options the search options
+     * @return the payload selector
+     */
+    private static Points.WithPayloadSelector toPayloadSelector(SearchOptions options) {
+        if (options.payloadFields() == null) {
+            return enable(true);
+        }
+        if (options.payloadFields().isEmpty()) {
+            return enable(false);
+        }
+        return include(List.copyOf(options.payloadFields()));
+    }
+
+    /**
+     * Copies vector values into a Qdrant vector one primitive at a time. The client's
+     * {@code VectorFactory} goes through a boxed list view of the array instead.
+     *
+     * @param values the vector values
+     * @return the Qdrant vector
+     */
+    private static Points.Vector toVector(float[] values) {
+        Points.Vector.Builder vector = Points.Vector.newBuilder();
+        for (float value : values) {
+            vector.addData(value);
+        }
+        return vector.build();
+    }
+
+    private static Points.PointId toPointId(String id) {
+        return id(UUID.fromString(id));
+    }
+
+    private static String fromPointId(Points.PointId pointId) {
+        return pointId.hasUuid() ? pointId.getUuid() : Long.toString(pointId.getNum());
+    }
+
+    private static Map<String, String> fromPayload(Map<String, JsonWithInt.Value> payload) {
+        Map<String, String> values = new HashMap<>();
+        payload.forEach((key, value) -> values.put(key, value.getStringValue()));
+        return values;
+    }
+
+    /**
+     * Adapts a Qdrant call to a {@link Mono}, cancelling the call if the subscriber goes away.
+     * <p>
+     * The call is only made on subscription, and again on every resubscription, so that retries,
+     * timeouts and cancellation applied to the {@link Mono} act on the request itself.
+     *
+     * @param call starts the call, returning the future of the Qdrant client
+     * @param <T>  the result type
+     * @return a {@link Mono} completing with the call's result
+     */
+    private static <T> Mono<T> toMono(Supplier<ListenableFuture<T>> call) {
+        return Mono.create(sink -> {
+            ListenableFuture<T> future = call.get();
+            Futures.addCallback(future, new FutureCallback<>() {
+                @Override
+                public void onSuccess(T result) {
+                    sink.success(result);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    sink.error(t);
+                }
+            }, MoreExecutors.directExecutor());
+            sink.onCancel(() -> future.cancel(true));
+        });
+    }
+}
@@ -0,0 +1,192 @@
+package com.epam.training.gen.ai.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Int8 copies of fixed-dimension vectors stored contiguously in a {@link MappedRecordFile}.
+ * <p>
+ * Each vector is quantized on its own: its value range is split into 256 steps, so a value
+ * {@code x} is stored as a signed byte {@code q} with {@code x ≈ offset + scale * q}. A record
+ * holds the offset, the scale and the sum of the codes, followed by one byte per dimension, so a
+ * 1536-dimension vector takes 1548 bytes instead of 6144. The dot product of two quantized vectors
+ * expands to
+ * <pre>
+ * n * offsetA * offsetB + offsetA * scaleB * sum(qB) + offsetB * scaleA * sum(qA) + scaleA * scaleB * qA · qB
+ * </pre>
+ * where only the last term depends on every dimension, and it is an exact integer dot product
+ * computed by {@link SimilarityKernel#dot(byte[], byte[])}. Query vectors are quantized the same way,
+ * once per search.
+ * <p>
+ * Quantized scores are estimates, good enough to pick candidates but not to rank final results;
+ * see {@link HnswIndex} for the rescoring. Reads may run concurrently with each other, but appends
+ * must be serialised against all other calls by the caller.
+ */
+final class QuantizedVectorStorage implements Closeable {
+
+    private static final int MAGIC = 0x49385631;
+    private static final int CODES_OFFSET = 2 * Float.BYTES + Integer.BYTES;
+    private static final int LEVELS = 255;
+
+    private final MappedRecordFile file;
+    private final int dimensions;
+    private final SimilarityKernel kernel;
+    private final ThreadLocal<byte[]> scratch;
+
+    /**
+     * Opens the quantized vector file, creating it if it does not exist.
+     *
+     * @param file       the quantized vector file
+     * @param dimensions the number of dimensions of every vector
+     * @param kernel     the kernel used to score stored vectors
+     * @throws IOException              if the file cannot be opened or mapped
+     * @throws IllegalArgumentException if the file holds vectors of a different dimension or is not a quantized vector file
+     */
+    QuantizedVectorStorage(Path file, int dimensions, SimilarityKernel kernel) throws IOException {
+        this(new MappedRecordFile(file, MAGIC, dimensions, CODES_OFFSET + dimensions), dimensions, kernel);
+    }
+
+    /**
+     * Opens the quantized vector file mapped in regions of up to the given size, see
+     * {@link MappedRecordFile#MappedRecordFile(Path, int, int, int, long)}.
+     *
+     * @param file              the quantized vector file
+     * @param dimensions        the number of dimensions of every vector
+     * @param kernel            the kernel used to score stored vectors
+     * @param regionTargetBytes the largest size of a mapped region
+     * @throws IOException              if the file cannot be opened or mapped
+     * @throws IllegalArgumentException if the file holds vectors of a different dimension or is not a quantized vector file
+     */
+    QuantizedVectorStorage(Path file, int dimensions, SimilarityKernel kernel, long regionTargetBytes) throws IOException {
+        this(new MappedRecordFile(file, MAGIC, dimensions, CODES_OFFSET + dimensions, regionTargetBytes), dimensions, kernel);
+    }
+
+    private QuantizedVectorStorage(MappedRecordFile file, int dimensions, SimilarityKernel kernel) {
+        this.file = file;
+        this.dimensions = dimensions;
+        this.kernel = kernel;
+        this.scratch = ThreadLocal.withInitial(() -> new byte[dimensions]);
+    }
+
+    /**
+     * Returns the size of a stored vector in bytes.
+     *
+     * @param dimensions the number of dimensions
+     * @return the record size
+     */
+    static int bytesPerVector(int dimensions) {
+        return CODES_OFFSET + dimensions;
+    }
+
+    /**
+     * Returns the number of stored vectors.
+     *
+     * @return the vector count
+     */
+    int size() {
+        return file.size();
+    }
+
+    /**
+     * Drops the vectors from {@code newSize} onwards.
+     *
+     * @param newSize the number of vectors to keep
+     */
+    void truncate(int newSize) {
+        file.truncate(newSize);
+    }
+
+    /**
+     * Quantizes and appends a vector.
+     *
+     * @param vector the vector, of exactly {@code dimensions} values
+     * @return the slot the vector was stored in
+     * @throws IOException if the file cannot be extended
+     */
+    int append(float[] vector) throws IOException {
+        Query quantized = quantize(vector);
+        int slot = file.prepareAppend();
+        ByteBuffer region = file.regionOf(slot);
+        int offset = file.offsetOf(slot);
+        region.putFloat(offset, quantized.offset());
+        region.putFloat(offset + Float.BYTES, quantized.scale());
+        region.putInt(offset + 2 * Float.BYTES, quantized.codeSum());
+        region.put(offset + CODES_OFFSET, quantized.codes());
+        file.commitAppend();
+        return slot;
+    }
+
+    /**
+     * Quantizes a query vector for scoring against stored vectors.
+     *
+     * @param vector the vector, of exactly {@code dimensions} values
+     * @return the quantized vector
+     */
+    Query quantize(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected a vector of " + dimensions + " dimensions, got " + vector.length);
+        }
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (float value : vector) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        float scale = (max - min) / LEVELS;
+        byte[] codes = new byte[dimensions];
+        int codeSum = 0;
+        if (scale > 0) {
+            for (int i = 0; i < dimensions; i++) {
+                int code = Math.round((vector[i] - min) / scale) + Byte.MIN_VALUE;
+                codes[i] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, code));
+                codeSum += codes[i];
+            }
+        }
+        return new Query(codes, min - Byte.MIN_VALUE * scale, scale, codeSum);
+    }
+
+    /**
+     * Estimates the dot product of a stored vector and a quantized query vector.
+     *
+     * @param slot  the slot of the stored vector
+     * @param query the quantized query vector
+     * @return the estimated dot product
+     */
+    float dot(int slot, Query query) {
+        ByteBuffer region = file.regionOf(slot);
+        int offset = file.offsetOf(slot);
+        float storedOffset = region.getFloat(offset);
+        float storedScale = region.getFloat(offset + Float.BYTES);
+        int storedCodeSum = region.getInt(offset + 2 * Float.BYTES);
+        byte[] codes = scratch.get();
+        region.get(offset + CODES_OFFSET, codes);
+        int codeDot = kernel.dot(codes, query.codes());
+        return dimensions * storedOffset * query.offset()
+                + storedOffset * query.scale() * query.codeSum()
+                + query.offset() * storedScale * storedCodeSum
+                + storedScale * query.scale() * codeDot;
+    }
+
+    /**
+     * Flushes written vectors to disk and closes the file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * A quantized vector: {@code vector[i] ≈ offset + scale * codes[i]}.
+     *
+     * @param codes   the int8 codes
+     * @param offset  the value of code zero
+     * @param scale   the value step between consecutive codes
+     * @param codeSum the sum of the codes
+     */
+    record Query(byte[] codes, float offset, float scale, int codeSum) {
+    }
+}
@@ -0,0 +1,165 @@
+package com.epam.training.gen.ai.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Short-lived cache of search query embeddings, keyed by normalised query text.
+ * <p>
+ * Queries are normalised to Unicode NFKC, lower case and single spaces, so that repeated questions
+ * differing only in case or spacing share an embedding. Entries expire after a fixed time to live
+ * and the least recently used entry is evicted once the cache is full. Concurrent misses for the same
+ * query share a single in-flight embedding request instead of each calling the model.
+ * <p>
+ * Unlike {@link EmbeddingCache}, which keeps document chunk embeddings for good, this cache is
+ * in-heap only and never outlives its time to live. Lookups are published as the
+ * {@code embedding.query-cache.requests} counter, tagged {@code hit}, {@code shared} (joined an
+ * in-flight request) or {@code miss}, and the {@code embedding.query-cache.hit-ratio} gauge.
+ */
+@Component
+public class QueryEmbeddingCache {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+    private final Map<String, Mono<float[]>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs a new {@code QueryEmbeddingCache}.
+     *
+     * @param maxEntries    the maximum number of cached query embeddings
+     * @param ttl           how long a query embedding stays cached
+     * @param meterRegistry the registry the lookup metrics are published to
+     */
+    public QueryEmbeddingCache(
+            @Value("${embedding.query-cache.max-entries}") int maxEntries,
+            @Value("${embedding.query-cache.ttl}") Duration ttl,
+            MeterRegistry meterRegistry
+    ) {
+        if (maxEntries < 1 || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Query cache size and time to live must be positive");
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+
+        registerCounter(meterRegistry, "hit", hits);
+        registerCounter(meterRegistry, "shared", shared);
+        registerCounter(meterRegistry, "miss", misses);
+        Gauge.builder("embedding.query-cache.hit-ratio", this, QueryEmbeddingCache::hitRatio)
+                .description("Share of query embedding lookups served without a new embedding request")
+                .register(meterRegistry);
+        Gauge.builder("embedding.query-cache.size", this, QueryEmbeddingCache::size)
+                .description("Number of cached query embeddings")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the embedding of a query, from the cache, from an in-flight request for the same
+     * normalised query, or from the loader. The returned array is shared and must not be modified.
+     *
+     * @param query  the query text
+     * @param loader embeds the query on a miss
+     * @return a {@link Mono} emitting the embedding vector
+     */
+    public Mono<float[]> get(String query, Function<String, Mono<float[]>> loader) {
+        String key = normalize(query);
+        return Mono.defer(() -> {
+            float[] cached = lookup(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return Mono.just(cached);
+            }
+            AtomicReference<Mono<float[]>> created = new AtomicReference<>();
+            Mono<float[]> request = inFlight.computeIfAbsent(key, k -> {
+                Mono<float[]> load = loader.apply(query)
+                        .doOnNext(vector -> store(k, vector))
+                        .doFinally(signal -> inFlight.remove(k, created.get()))
+                        .cache();
+                created.set(load);
+                return load;
+            });
+            (request == created.get() ? misses : shared).incrementAndGet();
+            return request;
+        });
+    }
+
+    /**
+     * Normalises a query for use as a cache key.
+     *
+     * @param query the query text
+     * @return the query in Unicode NFKC, lower case, with whitespace runs collapsed to single spaces and trimmed
+     */
+    static String normalize(String query) {
+        String normalized = Normalizer.normalize(query, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    private float[] lookup(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (System.nanoTime() - entry.storedAt() > ttlNanos) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.vector();
+        }
+    }
+
+    private void store(String key, float[] vector) {
+        synchronized (entries) {
+            entries.put(key, new Entry(vector, System.nanoTime()));
+        }
+    }
+
+    private int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private double hitRatio() {
+        long served = hits.get() + shared.get();
+        long total = served + misses.get();
+        return total == 0 ? 0 : (double) served / total;
+    }
+
+    private void registerCounter(MeterRegistry meterRegistry, String result, AtomicLong counter) {
+        FunctionCounter.builder("embedding.query-cache.requests", counter, AtomicLong::get)
+                .description("Query embedding cache lookups by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * A cached query embedding and when it was stored.
+     */
+    private record Entry(float[] vector, long storedAt) {
+    }
+}
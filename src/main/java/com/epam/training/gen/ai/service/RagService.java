@@ -1,116 +1,203 @@
 package com.epam.training.gen.ai.service;
 
 import com.epam.training.gen.ai.domain.EmbeddingModelResponse;
-import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
+import com.epam.training.gen.ai.domain.IngestionJobStatus;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Mono;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Service for managing context data in a Retrieval-Augmented Generation (RAG) system.
  * Provides functionality to upload, process, and search context data.
  */
+@Slf4j
 @Service
 public class RagService {
 
     private final SimpleVectorService simpleVectorService;
+    private final PdfTextExtractor pdfTextExtractor;
+    private final IngestionJobService ingestionJobService;
+    private final Path uploadDir;
+    private final Lock uploadLock = new ReentrantLock();
 
     /**
      * Constructor to initialize the RagService with required dependencies.
      *
      * @param simpleVectorService The service responsible for vectorizing and storing text data.
+     * @param pdfTextExtractor    The extractor streaming text out of uploaded PDF files.
+     * @param ingestionJobService The service running ingestion as asynchronous jobs.
+     * @param uploadDir           The directory uploaded files are stored in.
      */
     @Autowired
-    public RagService(SimpleVectorService simpleVectorService) {
+    public RagService(SimpleVectorService simpleVectorService,
+                      PdfTextExtractor pdfTextExtractor,
+                      IngestionJobService ingestionJobService,
+                      @Value("${rag.upload-dir}") String uploadDir) {
         this.simpleVectorService = simpleVectorService;
+        this.pdfTextExtractor = pdfTextExtractor;
+        this.ingestionJobService = ingestionJobService;
+        this.uploadDir = Paths.get(uploadDir);
     }
 
     /**
-     * Saves the uploaded file to a directory, extracts its text content, and processes it for vector storage.
+     * Returns the name of the collection context is stored in and searched from.
+     *
+     * @return the collection name
+     */
+    public String getCollectionName() {
+        return simpleVectorService.getCollectionName();
+    }
+
+    /**
+     * Saves the uploaded file to a directory and submits an ingestion job that extracts its text
+     * content and processes it for vector storage.
+     * <p>
+     * The file is stored under the SHA-256 of its content, which also identifies the document. This
+     * happens before the method returns, since the multipart data does not outlive the request. The
+     * stored file only caches the bytes: an upload of content that is still being ingested joins the
+     * running job, and any other upload is ingested again, with the vector store deciding which
+     * chunks are already stored. Re-ingesting stored content therefore costs an extraction and an ID
+     * lookup, but no embeddings, and ends as a skipped job. Text is extracted a page window at a time
+     * and chunked as it is read, so the whole document text is never held in memory.
+     * <p>
+     * A stored file is deleted again when its job fails or is cancelled, unless another job for the
+     * same content is active by then. Storing the file and submitting its job happen under the same
+     * lock as that deletion, so a job is never submitted for a file about to go away.
      *
      * @param file The uploaded file containing context information.
-     * @throws IOException          If an error occurs during file handling or text extraction.
-     * @throws ExecutionException   If an error occurs during text processing.
-     * @throws InterruptedException If the thread is interrupted during text processing.
+     * @return The status of the submitted job, or of the job already ingesting the same content.
+     * @throws IOException                If the uploaded file cannot be stored.
+     * @throws RejectedExecutionException If the ingestion job queue is full.
      */
-    public void saveContext(MultipartFile file) throws IOException, ExecutionException, InterruptedException {
-        File uploadedFile = saveToDir(file);
-        String content = extractTextFromFile(uploadedFile);
-        simpleVectorService.processAndSaveText(content);
+    public IngestionJobStatus submitContext(MultipartFile file) throws IOException {
+        String source = file.getOriginalFilename();
+        PartialUpload upload = saveToPartialFile(file);
+        try {
+            String contentHash = upload.contentHash();
+            Path path = uploadDir.resolve(contentHash + ".pdf");
+            // Set once the job is submitted; its callbacks only read it under the lock, so never any earlier
+            AtomicReference<String> jobId = new AtomicReference<>();
+            uploadLock.lock();
+            try {
+                if (!Files.exists(path)) {
+                    Files.move(upload.path(), path, StandardCopyOption.ATOMIC_MOVE);
+                }
+                IngestionJobStatus status = ingestionJobService.submit(source, contentHash, progress -> simpleVectorService
+                                .processAndSaveText(contentHash, pdfTextExtractor.extractText(path), progress)
+                                .doOnError(error -> forgetUpload(contentHash, path, jobId))
+                                .doOnCancel(() -> forgetUpload(contentHash, path, jobId)),
+                        () -> forgetUpload(contentHash, path, jobId));
+                jobId.compareAndSet(null, status.getJobId());
+                return status;
+            } finally {
+                uploadLock.unlock();
+            }
+        } finally {
+            Files.deleteIfExists(upload.path());
+        }
     }
 
     /**
      * Searches the context using a query and retrieves matching results as a list of DTOs.
      *
      * @param query The search query to find relevant context.
-     * @return A list of {@link EmbeddingModelResponse} containing the search results.
-     * @throws ExecutionException   If an error occurs during the search process.
-     * @throws InterruptedException If the thread is interrupted during the search process.
+     * @return A {@link Mono} emitting the {@link EmbeddingModelResponse} list containing the search results.
      */
-    public List<EmbeddingModelResponse> searchContext(String query) throws ExecutionException, InterruptedException {
-        var results = simpleVectorService.search(query);
-
-        return results.stream()
-                .map(EmbeddingModelResponse::toDTO)
-                .toList();
+    public Mono<List<EmbeddingModelResponse>> searchContext(String query) {
+        return simpleVectorService.search(query)
+                .map(results -> results.stream()
+                        .map(EmbeddingModelResponse::toDTO)
+                        .toList());
     }
 
     /**
-     * Extracts text content from a PDF file.
+     * Saves the uploaded file to a temporary file in the designated directory, to be moved to its
+     * content-addressed location by the caller.
+     * <p>
+     * The upload stream is hashed while it is copied, so the content is read exactly once, and
+     * outside the upload lock.
      *
-     * @param file The PDF file to extract text from.
-     * @return The extracted text content as a string.
-     * @throws IOException If an error occurs during text extraction.
+     * @param content The uploaded file to be saved.
+     * @return A {@link PartialUpload} describing the content and where it was saved.
+     * @throws IOException If the file cannot be written.
      */
-    private String extractTextFromFile(File file) throws IOException {
-        try (PDDocument document = Loader.loadPDF(file)) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            return stripper.getText(document);
+    private PartialUpload saveToPartialFile(MultipartFile content) throws IOException {
+        Path partial = Files.createTempFile(getOrCreateDir(), "upload-", ".part");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(content.getInputStream(), digest)) {
+                Files.copy(in, partial, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return new PartialUpload(HexFormat.of().formatHex(digest.digest()), partial);
+        } catch (NoSuchAlgorithmException e) {
+            Files.deleteIfExists(partial);
+            throw new IllegalStateException("SHA-256 is not available", e);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
         }
     }
 
     /**
-     * Saves the uploaded file to the designated directory.
+     * Deletes the stored file of a job that did not store its content, unless another job for
+     * the same content is active by then and still needs it. Failures are logged, not propagated.
      *
-     * @param content The uploaded file to be saved.
-     * @return A {@link File} object representing the saved file.
+     * @param contentHash The hex SHA-256 of the file content.
+     * @param path        The location of the stored file.
+     * @param jobId       The job giving the file up, unset if it was never queued.
      */
-    private File saveToDir(MultipartFile content) {
-        Path uploadDir = getOrCreateDir();
-        Path targetLocation = uploadDir.resolve(Objects.requireNonNull(content.getOriginalFilename()));
+    private void forgetUpload(String contentHash, Path path, AtomicReference<String> jobId) {
+        uploadLock.lock();
         try {
-            Files.copy(content.getInputStream(), targetLocation);
+            boolean needed = ingestionJobService.findActive(contentHash)
+                    .filter(active -> !active.getJobId().equals(jobId.get()))
+                    .isPresent();
+            if (!needed) {
+                Files.deleteIfExists(path);
+            }
         } catch (IOException e) {
-            e.printStackTrace();
+            log.warn("Failed to delete stored upload {}", path, e);
+        } finally {
+            uploadLock.unlock();
         }
-        return targetLocation.toFile();
     }
 
     /**
      * Ensures the existence of the upload directory. Creates it if it does not exist.
      *
      * @return The path to the upload directory.
+     * @throws IOException If the directory cannot be created.
      */
-    private Path getOrCreateDir() {
-        Path uploadDir = Paths.get("uploads");
-        if (!Files.exists(uploadDir)) {
-            try {
-                Files.createDirectories(uploadDir);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+    private Path getOrCreateDir() throws IOException {
+        Files.createDirectories(uploadDir);
         return uploadDir;
     }
+
+    /**
+     * An uploaded file saved to a temporary location.
+     *
+     * @param contentHash The hex SHA-256 of the file content.
+     * @param path        The location of the temporary file.
+     */
+    private record PartialUpload(String contentHash, Path path) {
+    }
 }
@@ -0,0 +1,99 @@
+package com.epam.training.gen.ai.service;
+
+/**
+ * Portable {@link SimilarityKernel} written as plain loops.
+ * <p>
+ * The loops keep four independent accumulators, so that consecutive additions do not wait on each
+ * other; the JIT does not vectorise floating-point reductions on its own, since that would change
+ * the rounding order.
+ */
+final class ScalarSimilarityKernel implements SimilarityKernel {
+
+    @Override
+    public String getName() {
+        return "scalar";
+    }
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        checkLengths(a, b);
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int i = 0;
+        for (int bound = a.length & ~3; i < bound; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    @Override
+    public float cosine(float[] a, float[] b) {
+        checkLengths(a, b);
+        float dot = 0;
+        float normA = 0;
+        float normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : (float) (dot / Math.sqrt((double) normA * normB));
+    }
+
+    @Override
+    public float squaredL2(float[] a, float[] b) {
+        checkLengths(a, b);
+        float s0 = 0;
+        float s1 = 0;
+        int i = 0;
+        for (int bound = a.length & ~1; i < bound; i += 2) {
+            float d0 = a[i] - b[i];
+            float d1 = a[i + 1] - b[i + 1];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+        }
+        for (; i < a.length; i++) {
+            float d = a[i] - b[i];
+            s0 += d * d;
+        }
+        return s0 + s1;
+    }
+
+    @Override
+    public int dot(byte[] a, byte[] b) {
+        checkLengths(a.length, b.length);
+        int s0 = 0;
+        int s1 = 0;
+        int s2 = 0;
+        int s3 = 0;
+        int i = 0;
+        for (int bound = a.length & ~3; i < bound; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return s0 + s1 + s2 + s3;
+    }
+
+    static void checkLengths(float[] a, float[] b) {
+        checkLengths(a.length, b.length);
+    }
+
+    static void checkLengths(int a, int b) {
+        if (a != b) {
+            throw new IllegalArgumentException("Vector lengths differ: " + a + " and " + b);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.epam.training.gen.ai.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What a {@link VectorStore} search returns: how many matches, starting from which rank, above which
+ * similarity, and with which payload fields.
+ *
+ * @param limit          the maximum number of matches to return
+ * @param offset         the number of best matches to skip, for paging through results
+ * @param scoreThreshold the minimum cosine similarity of a returned match
+ * @param payloadFields  the payload fields to return, or {@code null} for all of them; an empty set
+ *                       returns identifiers and scores only
+ */
+public record SearchOptions(int limit, int offset, float scoreThreshold, Set<String> payloadFields) {
+
+    /**
+     * Validates the options and takes an immutable copy of the payload fields.
+     *
+     * @throws IllegalArgumentException if the limit is not positive, the offset is negative or the
+     *                                  threshold is not a number
+     */
+    public SearchOptions {
+        if (limit < 1 || offset < 0) {
+            throw new IllegalArgumentException("Search limit must be positive and offset must not be negative");
+        }
+        if (Float.isNaN(scoreThreshold)) {
+            throw new IllegalArgumentException("Search score threshold must be a number");
+        }
+        payloadFields = payloadFields == null ? null : Set.copyOf(payloadFields);
+    }
+
+    /**
+     * Returns whether any payload field is returned, so that stores can skip reading payloads altogether.
+     *
+     * @return {@code false} if matches carry identifiers and scores only
+     */
+    public boolean includesPayload() {
+        return payloadFields == null || !payloadFields.isEmpty();
+    }
+
+    /**
+     * Keeps the selected fields of a payload.
+     *
+     * @param payload the full payload of a match
+     * @return the selected fields
+     */
+    public Map<String, String> project(Map<String, String> payload) {
+        if (payloadFields == null) {
+            return payload;
+        }
+        Map<String, String> projected = new HashMap<>(payloadFields.size() * 2);
+        for (String field : payloadFields) {
+            String value = payload.get(field);
+            if (value != null) {
+                projected.put(field, value);
+            }
+        }
+        return projected;
+    }
+}
@@ -0,0 +1,260 @@
+package com.epam.training.gen.ai.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in cache of chat answers, looked up by the meaning of the question rather than its exact text.
+ * <p>
+ * Every answered question is stored with its embedding. A new question is embedded and compared by
+ * cosine similarity with the earlier questions of the same {@link Scope}; the answer of the most
+ * similar one is returned if the similarity reaches {@code response-cache.similarity-threshold}.
+ * Question embeddings come from the {@link QueryEmbeddingCache}, so repeated questions cost no
+ * embedding request either. Entries expire after {@code response-cache.ttl}, and the oldest entry
+ * is evicted once {@code response-cache.max-entries} is reached. Answers grounded in a collection
+ * are dropped whenever new content is stored in it, see {@link CollectionUpdatedEvent}.
+ * <p>
+ * Enabled with {@code response-cache.enabled}. A failure to embed the question is logged and
+ * treated as a miss, so the cache never fails a request. Lookups are published as the
+ * {@code chat.response-cache.requests} counter, tagged {@code hit} or {@code miss}.
+ */
+@Slf4j
+@Component
+public class SemanticResponseCache {
+
+    private final boolean enabled;
+    private final float similarityThreshold;
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final SimpleVectorService vectorService;
+    private final SimilarityKernel kernel;
+    private final Map<Scope, List<Entry>> scopes = new HashMap<>();
+    private final Deque<Entry> insertionOrder = new ArrayDeque<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructs a new {@code SemanticResponseCache}.
+     *
+     * @param enabled             whether answers are cached at all
+     * @param similarityThreshold the minimum cosine similarity between two questions for one to reuse the other's answer
+     * @param maxEntries          the maximum number of cached answers
+     * @param ttl                 how long an answer stays cached
+     * @param vectorService       the service embedding questions
+     * @param kernel              the kernel comparing question embeddings
+     * @param meterRegistry       the registry the lookup counters are published to
+     */
+    public SemanticResponseCache(
+            @Value("${response-cache.enabled}") boolean enabled,
+            @Value("${response-cache.similarity-threshold}") float similarityThreshold,
+            @Value("${response-cache.max-entries}") int maxEntries,
+            @Value("${response-cache.ttl}") Duration ttl,
+            SimpleVectorService vectorService,
+            SimilarityKernel kernel,
+            MeterRegistry meterRegistry
+    ) {
+        if (similarityThreshold <= 0 || similarityThreshold > 1) {
+            throw new IllegalArgumentException("Response cache similarity threshold must be in (0, 1]");
+        }
+        if (maxEntries < 1 || ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Response cache size and time to live must be positive");
+        }
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.vectorService = vectorService;
+        this.kernel = kernel;
+
+        registerCounter(meterRegistry, "hit", hits);
+        registerCounter(meterRegistry, "miss", misses);
+    }
+
+    /**
+     * Finds the cached answer of the most similar earlier question in a scope.
+     *
+     * @param scope    the scope of the question
+     * @param question the question
+     * @return a {@link Mono} emitting the cached answer, or completing empty if the cache is disabled
+     * or no earlier question is similar enough
+     */
+    public Mono<String> find(Scope scope, String question) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return embed(question).mapNotNull(embedding -> find(scope, embedding));
+    }
+
+    /**
+     * Caches the answer to a question, evicting the oldest answer if the cache is full.
+     *
+     * @param scope    the scope of the question
+     * @param question the question
+     * @param answer   the answer
+     * @return a {@link Mono} completing once the answer is cached, or right away if the cache is disabled
+     */
+    public Mono<Void> put(Scope scope, String question, String answer) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return embed(question)
+                .doOnNext(embedding -> put(new Entry(scope, embedding, answer, System.nanoTime())))
+                .then();
+    }
+
+    private String find(Scope scope, float[] embedding) {
+        Entry best = null;
+        float bestSimilarity = similarityThreshold;
+        synchronized (this) {
+            List<Entry> entries = scopes.get(scope);
+            if (entries != null) {
+                long now = System.nanoTime();
+                for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+                    Entry entry = it.next();
+                    if (now - entry.storedAt() > ttlNanos) {
+                        it.remove();
+                        insertionOrder.remove(entry);
+                        continue;
+                    }
+                    float similarity = kernel.dot(entry.embedding(), embedding);
+                    if (similarity >= bestSimilarity) {
+                        best = entry;
+                        bestSimilarity = similarity;
+                    }
+                }
+            }
+        }
+        if (best == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        log.debug("Answered from the response cache with similarity {}", bestSimilarity);
+        return best.answer();
+    }
+
+    private synchronized void put(Entry entry) {
+        scopes.computeIfAbsent(entry.scope(), s -> new ArrayList<>()).add(entry);
+        insertionOrder.addLast(entry);
+        while (insertionOrder.size() > maxEntries) {
+            Entry eldest = insertionOrder.removeFirst();
+            List<Entry> entries = scopes.get(eldest.scope());
+            entries.remove(eldest);
+            if (entries.isEmpty()) {
+                scopes.remove(eldest.scope());
+            }
+        }
+    }
+
+    /**
+     * Drops every answer grounded in a collection that was just updated.
+     *
+     * @param event the collection update
+     */
+    @EventListener
+    public void onCollectionUpdated(CollectionUpdatedEvent event) {
+        int dropped = 0;
+        synchronized (this) {
+            for (Iterator<Map.Entry<Scope, List<Entry>>> it = scopes.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<Scope, List<Entry>> scope = it.next();
+                if (event.collection().equals(scope.getKey().collection())) {
+                    dropped += scope.getValue().size();
+                    insertionOrder.removeAll(scope.getValue());
+                    it.remove();
+                }
+            }
+        }
+        if (dropped > 0) {
+            log.info("Dropped {} cached answers for updated collection '{}'", dropped, event.collection());
+        }
+    }
+
+    /**
+     * Embeds a question and normalises the vector, so that a dot product gives the cosine similarity.
+     *
+     * @return a {@link Mono} emitting the unit-length embedding, or completing empty if the question
+     * could not be embedded
+     */
+    private Mono<float[]> embed(String question) {
+        return vectorService.embedQuery(question)
+                .mapNotNull(embedding -> {
+                    float norm = (float) Math.sqrt(kernel.dot(embedding, embedding));
+                    if (norm == 0) {
+                        return null;
+                    }
+                    float[] normalized = new float[embedding.length];
+                    for (int i = 0; i < embedding.length; i++) {
+                        normalized[i] = embedding[i] / norm;
+                    }
+                    return normalized;
+                })
+                .onErrorResume(e -> {
+                    log.warn("Failed to embed question for the response cache, bypassing it", e);
+                    return Mono.empty();
+                });
+    }
+
+    private void registerCounter(MeterRegistry meterRegistry, String result, AtomicLong counter) {
+        FunctionCounter.builder("chat.response-cache.requests", counter, AtomicLong::get)
+                .description("Semantic response cache lookups by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The answers a question may be matched against: those produced by the same model and, for
+     * questions answered from retrieved context, grounded in the same collection.
+     *
+     * @param modelId    the chat model identifier
+     * @param collection the collection the answer is grounded in, or {@code null} for plain chat
+     */
+    public record Scope(String modelId, String collection) {
+
+        public Scope {
+            Objects.requireNonNull(modelId, "modelId");
+        }
+
+        /**
+         * Returns the scope of plain chat answers of a model.
+         *
+         * @param modelId the chat model identifier
+         * @return the scope
+         */
+        public static Scope chat(String modelId) {
+            return new Scope(modelId, null);
+        }
+
+        /**
+         * Returns the scope of answers of a model grounded in a collection.
+         *
+         * @param modelId    the chat model identifier
+         * @param collection the collection name
+         * @return the scope
+         */
+        public static Scope context(String modelId, String collection) {
+            return new Scope(modelId, collection);
+        }
+    }
+
+    /**
+     * A cached answer with the normalised embedding of its question.
+     */
+    private record Entry(Scope scope, float[] embedding, String answer, long storedAt) {
+    }
+}
@@ -0,0 +1,112 @@
+package com.epam.training.gen.ai.service;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Chunking strategy that ends chunks at the strongest natural boundary available.
+ * <p>
+ * Within the second half of the allowed chunk length, a chunk ends at the last paragraph break if
+ * there is one, otherwise at the last sentence end, otherwise at the last word break, and only
+ * cuts a word as a last resort. The candidates are collected in a single forward scan. The overlap
+ * is moved forward to the first sentence or word that starts inside it, or dropped if the chunk
+ * ended at a word break and no word starts inside it, so the next chunk only begins mid-word after
+ * a word had to be cut.
+ */
+@Component
+public class SentenceAwareChunkingStrategy extends BoundaryChunkingStrategy {
+
+    @Override
+    public String getName() {
+        return "sentence";
+    }
+
+    @Override
+    protected int chunkEnd(String text, int from, int limit) {
+        int paragraphEnd = -1;
+        int sentenceEnd = -1;
+        int wordEnd = -1;
+        for (int end = from + Math.max(1, (limit - from) / 2); end <= limit; end++) {
+            char next = text.charAt(end);
+            if (!Character.isWhitespace(next)) {
+                continue;
+            }
+            char last = text.charAt(end - 1);
+            if (next == '\n' && endsLine(text, from, end)) {
+                paragraphEnd = end;
+            } else if (!Character.isWhitespace(last)) {
+                if (endsSentence(text, from, end)) {
+                    sentenceEnd = end;
+                } else {
+                    wordEnd = end;
+                }
+            }
+        }
+        if (paragraphEnd > 0) {
+            return paragraphEnd;
+        }
+        if (sentenceEnd > 0) {
+            return sentenceEnd;
+        }
+        if (wordEnd > 0) {
+            return wordEnd;
+        }
+        return avoidSplittingSurrogates(text, from, limit);
+    }
+
+    @Override
+    protected int nextStart(String text, int from, int end, int overlap) {
+        int start = super.nextStart(text, from, end, overlap);
+        int wordStart = -1;
+        for (int i = Math.max(start, from + 1); i < end; i++) {
+            if (Character.isWhitespace(text.charAt(i - 1)) && !Character.isWhitespace(text.charAt(i))) {
+                int gap = i - 1;
+                while (gap > from && Character.isWhitespace(text.charAt(gap - 1))) {
+                    gap--;
+                }
+                if (endsSentence(text, from, gap)) {
+                    return i;
+                }
+                if (wordStart < 0) {
+                    wordStart = i;
+                }
+            }
+        }
+        if (wordStart > 0) {
+            return wordStart;
+        }
+        // The overlap lies within a single word; only repeat part of it if the chunk cut that word
+        return Character.isWhitespace(text.charAt(end)) ? end : start;
+    }
+
+    /**
+     * Tells whether the line ending at {@code end} is preceded by another line break, so that
+     * {@code end} sits on a blank line between paragraphs.
+     */
+    private static boolean endsLine(String text, int from, int end) {
+        int i = end - 1;
+        while (i > from && (text.charAt(i) == ' ' || text.charAt(i) == '\t' || text.charAt(i) == '\r')) {
+            i--;
+        }
+        return i > from && text.charAt(i) == '\n';
+    }
+
+    /**
+     * Tells whether the text before {@code end} ends a sentence, allowing for closing quotes and
+     * brackets after the terminator.
+     */
+    private static boolean endsSentence(String text, int from, int end) {
+        int i = end - 1;
+        while (i > from && isClosing(text.charAt(i))) {
+            i--;
+        }
+        if (i < from) {
+            return false;
+        }
+        char c = text.charAt(i);
+        return c == '.' || c == '!' || c == '?' || c == '…' || c == '。' || c == '！' || c == '？';
+    }
+
+    private static boolean isClosing(char c) {
+        return c == '"' || c == '\'' || c == ')' || c == ']' || c == '”' || c == '’' || c == '»';
+    }
+}
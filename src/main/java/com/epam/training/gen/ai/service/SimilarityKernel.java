@@ -0,0 +1,53 @@
+package com.epam.training.gen.ai.service;
+
+/**
+ * Similarity functions over primitive float and int8 vectors of equal length.
+ * <p>
+ * Implementations are stateless and thread-safe. The active implementation is chosen at startup
+ * with the {@code similarity.kernel} property, see {@link SimilarityKernels}.
+ */
+public interface SimilarityKernel {
+
+    /**
+     * Returns the name of the implementation, for logging.
+     *
+     * @return the kernel name
+     */
+    String getName();
+
+    /**
+     * Computes the dot product of two vectors.
+     *
+     * @param a the first vector
+     * @param b the second vector, of the same length as {@code a}
+     * @return the dot product
+     */
+    float dot(float[] a, float[] b);
+
+    /**
+     * Computes the cosine similarity of two vectors.
+     *
+     * @param a the first vector
+     * @param b the second vector, of the same length as {@code a}
+     * @return the cosine similarity, or {@code 0} if either vector is zero
+     */
+    float cosine(float[] a, float[] b);
+
+    /**
+     * Computes the squared Euclidean distance between two vectors.
+     *
+     * @param a the first vector
+     * @param b the second vector, of the same length as {@code a}
+     * @return the squared L2 distance
+     */
+    float squaredL2(float[] a, float[] b);
+
+    /**
+     * Computes the dot product of two int8 vectors, as used by {@link QuantizedVectorStorage}.
+     *
+     * @param a the first vector
+     * @param b the second vector, of the same length as {@code a}
+     * @return the exact integer dot product
+     */
+    int dot(byte[] a, byte[] b);
+}
@@ -0,0 +1,69 @@
+package com.epam.training.gen.ai.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Chooses the {@link SimilarityKernel} used for all local vector scoring.
+ * <p>
+ * {@code similarity.kernel} accepts {@code simd}, {@code scalar} or {@code auto}. {@code auto} picks
+ * the SIMD kernel whenever the {@code jdk.incubator.vector} module was enabled with
+ * {@code --add-modules jdk.incubator.vector}, and the scalar kernel otherwise, logging a warning;
+ * {@code simd} fails at startup if the module is missing. The flag has to be passed to the JVM
+ * running the application: the build only adds it for {@code mvn spring-boot:run}, not to the jar.
+ */
+@Slf4j
+@Configuration
+public class SimilarityKernels {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    /**
+     * Creates the configured similarity kernel.
+     *
+     * @param kernel the kernel to use: {@code auto}, {@code simd} or {@code scalar}
+     * @return the similarity kernel
+     */
+    @Bean
+    public SimilarityKernel similarityKernel(@Value("${similarity.kernel}") String kernel) {
+        SimilarityKernel selected = select(kernel);
+        log.info("Using the {} similarity kernel", selected.getName());
+        return selected;
+    }
+
+    /**
+     * Resolves a kernel by name.
+     *
+     * @param kernel the kernel to use: {@code auto}, {@code simd} or {@code scalar}
+     * @return the similarity kernel
+     * @throws IllegalArgumentException if the name is unknown
+     * @throws IllegalStateException    if the SIMD kernel is requested but the Vector API is not available
+     */
+    static SimilarityKernel select(String kernel) {
+        return switch (kernel) {
+            case "scalar" -> new ScalarSimilarityKernel();
+            case "simd" -> {
+                if (!vectorApiAvailable()) {
+                    throw new IllegalStateException("The simd similarity kernel needs --add-modules " + VECTOR_MODULE);
+                }
+                yield new VectorApiSimilarityKernel();
+            }
+            case "auto" -> {
+                if (vectorApiAvailable()) {
+                    yield new VectorApiSimilarityKernel();
+                }
+                log.warn("The {} module is not enabled, falling back to the scalar similarity kernel; "
+                        + "start the JVM with --add-modules {} to use the SIMD kernel", VECTOR_MODULE, VECTOR_MODULE);
+                yield new ScalarSimilarityKernel();
+            }
+            default -> throw new IllegalArgumentException("Unknown similarity kernel '" + kernel
+                    + "', expected auto, simd or scalar");
+        };
+    }
+
+    private static boolean vectorApiAvailable() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+}
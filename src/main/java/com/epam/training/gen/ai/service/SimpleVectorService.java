@@ -4,164 +4,540 @@ import com.azure.ai.openai.OpenAIAsyncClient;
 import com.azure.ai.openai.models.EmbeddingItem;
 import com.azure.ai.openai.models.Embeddings;
 import com.azure.ai.openai.models.EmbeddingsOptions;
-import io.qdrant.client.QdrantClient;
-import io.qdrant.client.grpc.Collections;
-import io.qdrant.client.grpc.Points;
+import com.epam.training.gen.ai.configuration.ChunkingProperties;
+import com.epam.training.gen.ai.domain.RecallReport;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
-
-import static io.qdrant.client.PointIdFactory.id;
-import static io.qdrant.client.ValueFactory.value;
-import static io.qdrant.client.VectorsFactory.vectors;
-import static io.qdrant.client.WithPayloadSelectorFactory.enable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * Service class for handling vector operations such as building embeddings, saving vectors, and searching.
  * <p>
- * This service integrates with OpenAI for generating embeddings and Qdrant for vector database operations.
+ * This service integrates with OpenAI for generating embeddings and stores and searches them through the
+ * configured {@link VectorStore}.
+ * <p>
+ * The vector size of the collection follows the embedding model: it is the {@code embedding.dimensions}
+ * option when set, which asks models that support it for shortened vectors, and otherwise the native
+ * size of a well-known model, or else the size of a probe embedding. The collection is checked
+ * against it at startup.
  */
 @Slf4j
 @Service
 public class SimpleVectorService {
 
+    private static final Map<String, Integer> NATIVE_DIMENSIONS = Map.of(
+            "text-embedding-ada-002", 1536,
+            "text-embedding-3-small", 1536,
+            "text-embedding-3-large", 3072);
+    private static final String DIMENSION_PROBE = "dimension probe";
+
     private final OpenAIAsyncClient openAIAsyncClient;
-    private final QdrantClient qdrantClient;
+    private final VectorStore vectorStore;
+    private final EmbeddingCache embeddingCache;
+    private final QueryEmbeddingCache queryEmbeddingCache;
+    private final EmbeddingMicroBatcher queryEmbeddingBatcher;
+    private final ApplicationEventPublisher eventPublisher;
     private final String embeddingModel;
+    private final Integer embeddingDimensions;
+    private final String embeddingCacheModel;
+    private final Mono<Integer> vectorDimensions;
     private final String collectionName;
+    private final int searchLimit;
+    private final int searchMaxLimit;
+    private final float searchScoreThreshold;
+    private final int batchMaxInputs;
+    private final int batchMaxTokens;
+    private final int embeddingConcurrency;
+    private final int upsertBatchSize;
+    private final int upsertConcurrency;
+    private final ChunkingStrategy chunkingStrategy;
+    private final ChunkingSettings chunkingSettings;
 
     /**
      * Constructs a new {@code SimpleVectorService}.
      *
-     * @param openAIAsyncClient the client for interacting with OpenAI APIs
-     * @param qdrantClient      the client for interacting with the Qdrant vector database
-     * @param embeddingModel    the embedding model name
-     * @param collectionName    the name of the Qdrant collection
+     * @param openAIAsyncClient    the client for interacting with OpenAI APIs
+     * @param vectorStore          the store holding the embedding vectors
+     * @param embeddingCache       the cache consulted before any text is sent for embedding
+     * @param queryEmbeddingCache  the cache of search query embeddings
+     * @param eventPublisher       the publisher notified when the collection is updated
+     * @param chunkingStrategies   the available chunking strategies
+     * @param chunkingProperties   the chunking configuration, resolved for the collection
+     * @param embeddingModel       the embedding model name
+     * @param embeddingDimensions  the number of dimensions requested from the embedding model, or
+     *                             {@code null} for its native size
+     * @param collectionName       the name of the vector store collection
+     * @param searchLimit          the number of matches a search returns unless asked otherwise
+     * @param searchMaxLimit       the largest number of matches a single search may ask for
+     * @param searchScoreThreshold the minimum similarity of a match unless asked otherwise
+     * @param batchMaxInputs       the maximum number of texts sent in a single embeddings request
+     * @param batchMaxTokens       the approximate maximum number of tokens sent in a single embeddings request
+     * @param embeddingConcurrency the maximum number of embeddings requests in flight during ingestion
+     * @param upsertBatchSize      the number of points sent to the vector store in a single upsert
+     * @param upsertConcurrency    the maximum number of upserts in flight during ingestion
+     * @param microBatchWindow     the longest time a query embedding request waits to be batched
+     *                             with concurrent ones, or zero to send each on its own
+     * @param microBatchMaxSize    the maximum number of query texts sent in a single embeddings request
      */
     public SimpleVectorService(
             OpenAIAsyncClient openAIAsyncClient,
-            QdrantClient qdrantClient,
+            VectorStore vectorStore,
+            EmbeddingCache embeddingCache,
+            QueryEmbeddingCache queryEmbeddingCache,
+            ApplicationEventPublisher eventPublisher,
+            List<ChunkingStrategy> chunkingStrategies,
+            ChunkingProperties chunkingProperties,
             @Value("${embedding.model}") String embeddingModel,
-            @Value("${embedding.collection-name}") String collectionName
+            @Value("${embedding.dimensions}") Integer embeddingDimensions,
+            @Value("${embedding.collection-name}") String collectionName,
+            @Value("${embedding.search.limit}") int searchLimit,
+            @Value("${embedding.search.max-limit}") int searchMaxLimit,
+            @Value("${embedding.search.score-threshold}") float searchScoreThreshold,
+            @Value("${embedding.batch.max-inputs}") int batchMaxInputs,
+            @Value("${embedding.batch.max-tokens}") int batchMaxTokens,
+            @Value("${ingestion.embedding-concurrency}") int embeddingConcurrency,
+            @Value("${ingestion.upsert-batch-size}") int upsertBatchSize,
+            @Value("${ingestion.upsert-concurrency}") int upsertConcurrency,
+            @Value("${embedding.micro-batch.window}") Duration microBatchWindow,
+            @Value("${embedding.micro-batch.max-size}") int microBatchMaxSize
     ) {
+        if (batchMaxInputs < 1 || batchMaxTokens < 1) {
+            throw new IllegalArgumentException("Embedding batch limits must be positive");
+        }
+        if (embeddingConcurrency < 1 || upsertBatchSize < 1 || upsertConcurrency < 1) {
+            throw new IllegalArgumentException("Ingestion concurrency and upsert batch size must be positive");
+        }
+        if (searchLimit < 1 || searchMaxLimit < searchLimit) {
+            throw new IllegalArgumentException("Search limit must be positive and not above the maximum search limit");
+        }
+        if (embeddingDimensions != null && embeddingDimensions < 1) {
+            throw new IllegalArgumentException("Embedding dimensions must be positive");
+        }
         this.openAIAsyncClient = openAIAsyncClient;
-        this.qdrantClient = qdrantClient;
+        this.vectorStore = vectorStore;
+        this.embeddingCache = embeddingCache;
+        this.queryEmbeddingCache = queryEmbeddingCache;
+        this.queryEmbeddingBatcher = new EmbeddingMicroBatcher(this::retrieveEmbeddings, microBatchWindow, microBatchMaxSize);
+        this.eventPublisher = eventPublisher;
         this.embeddingModel = embeddingModel;
+        this.embeddingDimensions = embeddingDimensions;
+        this.embeddingCacheModel = embeddingDimensions == null ? embeddingModel : embeddingModel + '@' + embeddingDimensions;
+        this.vectorDimensions = resolveVectorDimensions();
         this.collectionName = collectionName;
+        this.searchLimit = searchLimit;
+        this.searchMaxLimit = searchMaxLimit;
+        this.searchScoreThreshold = searchScoreThreshold;
+        this.batchMaxInputs = batchMaxInputs;
+        this.batchMaxTokens = batchMaxTokens;
+        this.embeddingConcurrency = embeddingConcurrency;
+        this.upsertBatchSize = upsertBatchSize;
+        this.upsertConcurrency = upsertConcurrency;
+        this.chunkingSettings = chunkingProperties.forCollection(collectionName);
+        this.chunkingStrategy = chunkingStrategies.stream()
+                .filter(strategy -> strategy.getName().equals(chunkingSettings.strategy()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown chunking strategy '"
+                        + chunkingSettings.strategy() + "'"));
+        log.info("Chunking collection '{}' with {}", collectionName, chunkingSettings);
     }
 
     /**
      * Processes the input text, generates embeddings, converts them into vector points,
-     * and saves them to the Qdrant collection.
+     * and saves them to the vector store collection.
+     * <p>
+     * The text itself serves as the document identity, so storing the same text twice is a no-op.
      *
      * @param text the input text to be processed into embeddings
      * @throws ExecutionException   if the vector saving operation fails
      * @throws InterruptedException if the thread is interrupted during execution
      */
     public void processAndSaveText(String text) throws ExecutionException, InterruptedException {
-        List<String> textChunks = splitText(text, 500, 50);
-        var pointStructs = new ArrayList<Points.PointStruct>();
-        for (String chunk : textChunks) {
-            var embeddings = getEmbeddings(chunk);
-
-            for (var embeddingItem : embeddings) {
-                var point = new ArrayList<>(embeddingItem.getEmbedding());
-                pointStructs.add(getPointStruct(point, chunk));
-            }
-        }
-        saveVector(pointStructs);
+        processAndSaveText(text, IngestionProgress.NONE).toFuture().get();
     }
 
     /**
-     * Searches for the closest embeddings in the Qdrant collection based on the input text.
+     * Processes the input text into vector points and streams them into the vector store collection,
+     * reporting progress as batches are embedded and stored. The text itself serves as the
+     * document identity.
      *
-     * @param text the input text for searching similar embeddings
-     * @return a list of scored points representing the closest embeddings
-     * @throws ExecutionException   if the search operation fails
+     * @param text     the input text to be processed into embeddings
+     * @param progress the listener notified about embedded chunks, upserted points and failures
+     * @return a {@link Mono} emitting the number of points upserted once the text is fully stored
+     */
+    public Mono<Long> processAndSaveText(String text, IngestionProgress progress) {
+        return processAndSaveText(sha256(text), Flux.just(text), progress);
+    }
+
+    /**
+     * Processes the text of a document, generates embeddings, converts them into vector points,
+     * and saves them to the vector store collection.
+     *
+     * @param documentId the identifier of the document the text belongs to
+     * @param text       the input text to be processed into embeddings
+     * @throws ExecutionException   if the vector saving operation fails
      * @throws InterruptedException if the thread is interrupted during execution
      */
-    public List<Points.ScoredPoint> search(String text) throws ExecutionException, InterruptedException {
-        var embeddings = retrieveEmbeddings(text);
-        var qe = new ArrayList<Float>();
-        embeddings.block().getData().forEach(embedding -> qe.addAll(embedding.getEmbedding()));
-        return qdrantClient
-                .searchAsync(
-                        Points.SearchPoints.newBuilder()
-                                .setCollectionName(collectionName)
-                                .addAllVector(qe)
-                                .setLimit(50)
-                                .setWithPayload(enable(true))
-                                .setScoreThreshold(0.8f)
-                                .build()
-                ).get();
+    public void processAndSaveText(String documentId, String text) throws ExecutionException, InterruptedException {
+        processAndSaveText(documentId, Flux.just(text)).toFuture().get();
+    }
+
+    /**
+     * Splits a stream of text segments into chunks and streams them into the vector store collection.
+     * Segments are consumed one at a time, so a document can be ingested while it is still being
+     * read, and chunk overlap carries across segment boundaries.
+     *
+     * @param documentId the identifier of the document the text belongs to
+     * @param segments   consecutive pieces of the document text, in document order
+     * @return a {@link Mono} emitting the number of points upserted once the stream is fully stored
+     */
+    public Mono<Long> processAndSaveText(String documentId, Flux<String> segments) {
+        return processAndSaveText(documentId, segments, IngestionProgress.NONE);
+    }
+
+    /**
+     * Splits a stream of text segments into chunks and streams them into the vector store collection,
+     * reporting progress as batches are embedded and stored. Chunking follows the strategy, chunk
+     * size and overlap configured for the collection.
+     *
+     * @param documentId the identifier of the document the text belongs to
+     * @param segments   consecutive pieces of the document text, in document order
+     * @param progress   the listener notified about embedded chunks, upserted points and failures
+     * @return a {@link Mono} emitting the number of points upserted once the stream is fully stored
+     */
+    public Mono<Long> processAndSaveText(String documentId, Flux<String> segments, IngestionProgress progress) {
+        return processAndSaveChunks(documentId, chunkingStrategy.split(segments, chunkingSettings), progress);
+    }
+
+    /**
+     * Streams text chunks through embedding and into the vector store.
+     * <p>
+     * Chunks are grouped into embedding batches, up to {@code ingestion.embedding-concurrency} batches
+     * are embedded in parallel, and the resulting points are upserted in fixed-size batches of
+     * {@code ingestion.upsert-batch-size}. Every stage requests only as much as it can hold, so the
+     * number of chunks and points alive at any moment is bounded by the pipeline window rather
+     * than by the size of the source document. Up to {@code ingestion.upsert-concurrency} upserts
+     * are in flight at once, and each stays well under the gRPC message size limit.
+     * <p>
+     * Point IDs are derived from the document ID and the chunk content, so re-ingesting a document
+     * is idempotent. Before embedding, each group of chunks is checked against the collection in a
+     * single lookup and chunks that are already stored are skipped. Chunks may be views into a
+     * larger text; only the ones that are actually embedded are copied into strings.
+     * <p>
+     * Once the stream ends, a {@link CollectionUpdatedEvent} is published if any point was stored,
+     * even if the stream failed part way.
+     *
+     * @param documentId the identifier of the document the chunks belong to
+     * @param chunks     the text chunks to embed and store, in document order
+     * @param progress   the listener notified about embedded chunks, upserted points and failures
+     * @return a {@link Mono} emitting the number of points upserted once the stream is fully stored
+     */
+    public Mono<Long> processAndSaveChunks(String documentId, Flux<? extends CharSequence> chunks,
+                                           IngestionProgress progress) {
+        return Mono.defer(() -> {
+            AtomicLong upserted = new AtomicLong();
+            return ensureCollection()
+                    .thenMany(chunks
+                            .map(text -> new Chunk(pointId(documentId, text).toString(), text))
+                            .buffer(upsertBatchSize)
+                            .concatMap(this::withoutStoredChunks, 1)
+                            .flatMapIterable(Function.identity(), 1)
+                            .map(Chunk::materialize)
+                            .transform(batches -> toEmbeddingBatches(batches, Chunk::text))
+                            .flatMapSequential(batch -> embedTexts(batch.stream().map(chunk -> chunk.text().toString()).toList())
+                                    .doOnNext(vectors -> progress.chunksEmbedded(vectors.size()))
+                                    .doOnError(progress::failed)
+                                    .map(vectors -> toRecords(documentId, batch, vectors)), embeddingConcurrency, 1)
+                            .flatMapIterable(Function.identity(), 1)
+                            .buffer(upsertBatchSize)
+                            .flatMap(records -> vectorStore.upsert(collectionName, records)
+                                    .doOnNext(count -> {
+                                        upserted.addAndGet(count);
+                                        progress.pointsUpserted(count.intValue());
+                                    })
+                                    .doOnError(progress::failed), upsertConcurrency, 1))
+                    .reduce(0L, Long::sum)
+                    .doFinally(signal -> {
+                        if (upserted.get() > 0) {
+                            eventPublisher.publishEvent(new CollectionUpdatedEvent(collectionName));
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Searches for the closest embeddings in the vector store collection based on the input text.
+     * <p>
+     * The query embedding comes from the {@link QueryEmbeddingCache}, so a repeated question skips
+     * the embedding request. Queries are not written to the {@link EmbeddingCache}, which holds
+     * document chunks.
+     *
+     * @param text the input text for searching similar embeddings
+     * @return a {@link Mono} emitting the matches representing the closest embeddings, most similar
+     * first, with the configured default limit and score threshold and their full payload
+     */
+    public Mono<List<VectorMatch>> search(String text) {
+        return search(text, searchOptions(null, null, null, null)).collectList();
+    }
+
+    /**
+     * Searches for the closest embeddings in the vector store collection based on the input text.
+     *
+     * @param text    the input text for searching similar embeddings
+     * @param options the number of matches to skip and return, the minimum similarity and the payload fields
+     * @return a {@link Flux} of matches, most similar first
+     */
+    public Flux<VectorMatch> search(String text, SearchOptions options) {
+        return embedQuery(text)
+                .flatMap(vector -> vectorStore.search(collectionName, vector, options))
+                .flatMapIterable(Function.identity());
+    }
+
+    /**
+     * Builds search options, using the configured defaults for anything not given.
+     *
+     * @param limit          the maximum number of matches, or {@code null} for the default
+     * @param offset         the number of best matches to skip, or {@code null} for none
+     * @param scoreThreshold the minimum similarity of a match, or {@code null} for the default
+     * @param payloadFields  the payload fields to return, or {@code null} for all of them
+     * @return the search options
+     * @throws IllegalArgumentException if a value is out of range, including a limit above the maximum search limit
+     */
+    public SearchOptions searchOptions(Integer limit, Integer offset, Float scoreThreshold,
+                                       Collection<String> payloadFields) {
+        if (limit != null && limit > searchMaxLimit) {
+            throw new IllegalArgumentException("Search limit must not exceed " + searchMaxLimit);
+        }
+        return new SearchOptions(
+                limit == null ? searchLimit : limit,
+                offset == null ? 0 : offset,
+                scoreThreshold == null ? searchScoreThreshold : scoreThreshold,
+                payloadFields == null ? null : Set.copyOf(payloadFields));
+    }
+
+    /**
+     * Embeds a search query or question, through the {@link QueryEmbeddingCache}.
+     *
+     * @param query the query text
+     * @return a {@link Mono} emitting the embedding vector, which is shared and must not be modified
+     */
+    public Mono<float[]> embedQuery(String query) {
+        return queryEmbeddingCache.get(query, this::requestQueryEmbedding);
+    }
+
+    /**
+     * Returns the name of the vector store collection this service stores to and searches.
+     *
+     * @return the collection name
+     */
+    public String getCollectionName() {
+        return collectionName;
+    }
+
+    /**
+     * Measures how well the approximate search of the vector store collection finds the exact
+     * nearest neighbours.
+     *
+     * @param k       the number of neighbours to compare
+     * @param queries the maximum number of stored points sampled as queries
+     * @return a {@link Mono} emitting the recall report, or failing with
+     * {@link UnsupportedOperationException} if the vector store does not support the measurement
+     */
+    public Mono<RecallReport> measureRecall(int k, int queries) {
+        // The measurement runs thousands of searches, far too long for a request thread
+        return vectorStore.measureRecall(collectionName, k, queries).subscribeOn(Schedulers.boundedElastic());
     }
 
     /**
      * Retrieves embeddings for the given text using the OpenAI API.
      *
      * @param text the input text for generating embeddings
-     * @return a list of embedding items
+     * @return a {@link Mono} emitting the embedding items
+     */
+    public Mono<List<EmbeddingItem>> getEmbeddings(String text) {
+        return retrieveEmbeddings(text).map(Embeddings::getData);
+    }
+
+    /**
+     * Retrieves embeddings for several texts, packing them into as few OpenAI requests as the
+     * configured batch limits allow.
+     * <p>
+     * A batch is closed when it reaches either the maximum number of inputs or the approximate
+     * token budget. Results are mapped back to their texts by {@link EmbeddingItem#getPromptIndex()},
+     * so the returned list is in the same order as {@code texts}.
+     *
+     * @param texts the input texts for generating embeddings
+     * @return a {@link Mono} emitting the embedding vectors, one per input text, in input order
      */
-    public List<EmbeddingItem> getEmbeddings(String text) {
-        var embeddings = retrieveEmbeddings(text);
-        return embeddings.block().getData();
+    public Mono<List<float[]>> getEmbeddings(List<String> texts) {
+        return Flux.fromIterable(texts)
+                .transform(batches -> toEmbeddingBatches(batches, Function.identity()))
+                .concatMap(this::embedTexts)
+                .flatMapIterable(Function.identity())
+                .collectList();
     }
 
     /**
-     * Creates a new collection in the Qdrant database with the specified parameters.
+     * Creates the collection in the vector store if it does not exist yet.
      *
      * @throws ExecutionException   if the collection creation operation fails
      * @throws InterruptedException if the thread is interrupted during execution
      */
     public void createCollection() throws ExecutionException, InterruptedException {
-        var result = qdrantClient.createCollectionAsync(collectionName,
-                        Collections.VectorParams.newBuilder()
-                                .setDistance(Collections.Distance.Cosine)
-                                .setSize(1536)
-                                .build())
-                .get();
-        log.info("Collection was created: [{}]", result.getResult());
+        ensureCollection().toFuture().get();
     }
 
     /**
-     * Saves the list of vector point structures to the Qdrant collection.
-     * If the collection does not exist, it is created first.
+     * Checks the collection against the embedding vector size once the application has started,
+     * creating it if it does not exist yet.
+     * <p>
+     * A collection the vector store reports as incompatible, such as one with a different vector
+     * size, stops the application, since nothing could be stored in or searched from it. Any other
+     * failure, such as the vector store or the embedding model being unreachable, is only logged:
+     * the check is repeated before the collection is used.
      *
-     * @param pointStructs the list of vector point structures to be saved
-     * @throws ExecutionException   if the save operation fails
-     * @throws InterruptedException if the thread is interrupted during execution
+     * @throws IllegalStateException if the collection is incompatible with the embedding model
      */
-    private void saveVector(ArrayList<Points.PointStruct> pointStructs)
-            throws InterruptedException, ExecutionException {
+    @EventListener(ApplicationReadyEvent.class)
+    public void validateCollection() {
         try {
-            qdrantClient.getCollectionInfoAsync(collectionName).get();
-        } catch (Exception ex) {
-            log.info("Collection '{}' not found. Creating a new collection...", collectionName);
-            createCollection();
+            ensureCollection().block();
+        } catch (IncompatibleCollectionException e) {
+            throw new IllegalStateException("Collection '" + collectionName
+                    + "' cannot be used with embedding model '" + embeddingModel + "'", e);
+        } catch (RuntimeException e) {
+            log.warn("Could not check collection '{}' at startup, will retry on first use", collectionName, e);
         }
-        var updateResult = qdrantClient.upsertAsync(collectionName, pointStructs).get();
-        log.info("Upsert status: {}", updateResult.getStatus().name());
     }
 
     /**
-     * Constructs a vector point structure from a list of float values.
+     * Stops batching query embedding requests.
+     */
+    @PreDestroy
+    public void close() {
+        queryEmbeddingBatcher.close();
+    }
+
+    /**
+     * Makes sure the collection exists in the vector store.
+     *
+     * @return a {@link Mono} completing once the collection is available
+     */
+    private Mono<Void> ensureCollection() {
+        return vectorDimensions.flatMap(dimensions -> vectorStore.createCollection(collectionName, dimensions));
+    }
+
+    /**
+     * Determines the size of the vectors produced by the embedding model: the configured
+     * dimensions, the native size of a well-known model, or the size of a probe embedding. The
+     * probe runs once and its result is reused; a failed probe is retried by the next caller.
+     *
+     * @return a {@link Mono} emitting the number of dimensions
+     */
+    private Mono<Integer> resolveVectorDimensions() {
+        if (embeddingDimensions != null) {
+            return Mono.just(embeddingDimensions);
+        }
+        Integer nativeDimensions = NATIVE_DIMENSIONS.get(embeddingModel);
+        if (nativeDimensions != null) {
+            return Mono.just(nativeDimensions);
+        }
+        return Mono.defer(() -> embedTexts(List.of(DIMENSION_PROBE)))
+                .map(vectors -> vectors.get(0).length)
+                .doOnNext(dimensions -> log.info("Embedding model '{}' produces {}-dimension vectors",
+                        embeddingModel, dimensions))
+                .cache(dimensions -> Duration.ofMillis(Long.MAX_VALUE), error -> Duration.ZERO, () -> Duration.ZERO);
+    }
+
+    /**
+     * Drops the chunks whose points are already stored in the collection, using a single bulk
+     * lookup that fetches neither payloads nor vectors.
+     *
+     * @param chunks the chunks to check
+     * @return a {@link Mono} emitting the chunks that still need to be embedded and stored
+     */
+    private Mono<List<Chunk>> withoutStoredChunks(List<Chunk> chunks) {
+        List<String> ids = chunks.stream().map(Chunk::id).toList();
+        return vectorStore.existingIds(collectionName, ids)
+                .map(storedIds -> {
+                    if (storedIds.isEmpty()) {
+                        return chunks;
+                    }
+                    log.info("Skipping {} of {} chunks that are already stored", storedIds.size(), chunks.size());
+                    return chunks.stream()
+                            .filter(chunk -> !storedIds.contains(chunk.id()))
+                            .toList();
+                });
+    }
+
+    /**
+     * Constructs the vector store records for a batch of chunks and their embeddings.
+     *
+     * @param documentId the identifier of the document the chunks belong to
+     * @param chunks     the chunks
+     * @param vectors    the embedding vectors, in the same order as {@code chunks}
+     * @return the records, in the same order as {@code chunks}
+     */
+    private List<VectorRecord> toRecords(String documentId, List<Chunk> chunks, List<float[]> vectors) {
+        var records = new ArrayList<VectorRecord>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            records.add(new VectorRecord(chunk.id(), vectors.get(i), Map.of(
+                    "content", chunk.text().toString(),
+                    "document_id", documentId)));
+        }
+        return records;
+    }
+
+    /**
+     * Derives a deterministic point ID from the document ID and the SHA-256 of the chunk content,
+     * so the same chunk of the same document always maps to the same point.
+     *
+     * @param documentId the identifier of the document the chunk belongs to
+     * @param text       the chunk text
+     * @return a name-based UUID for the chunk
+     */
+    private static UUID pointId(String documentId, CharSequence text) {
+        return UUID.nameUUIDFromBytes((documentId + '\n' + sha256(text)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Computes the hex-encoded SHA-256 of a text.
      *
-     * @param point the vector values
-     * @return a {@link Points.PointStruct} object containing the vector and associated metadata
+     * @param text the text to hash
+     * @return the hex digest of the UTF-8 bytes of {@code text}
      */
-    private Points.PointStruct getPointStruct(List<Float> point, String chunk) {
-        return Points.PointStruct.newBuilder()
-                .setId(id(UUID.randomUUID()))
-                .setVectors(vectors(point))
-                .putAllPayload(Map.of("content", value(chunk)))
-                .build();
+    private static String sha256(CharSequence text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(text)));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
 
     /**
@@ -171,28 +547,133 @@ public class SimpleVectorService {
      * @return a {@link Mono} containing the embeddings
      */
     private Mono<Embeddings> retrieveEmbeddings(String text) {
-        var qembeddingsOptions = new EmbeddingsOptions(List.of(text));
+        return retrieveEmbeddings(List.of(text));
+    }
+
+    /**
+     * Asynchronously retrieves embeddings for several texts in a single OpenAI API call.
+     *
+     * @param texts the input texts for generating embeddings
+     * @return a {@link Mono} containing the embeddings, indexed by prompt position
+     */
+    private Mono<Embeddings> retrieveEmbeddings(List<String> texts) {
+        var qembeddingsOptions = new EmbeddingsOptions(texts);
+        if (embeddingDimensions != null) {
+            qembeddingsOptions.setDimensions(embeddingDimensions);
+        }
         return openAIAsyncClient.getEmbeddings(embeddingModel, qembeddingsOptions);
     }
 
     /**
-     * Splits a given text into chunks of a specified size with optional overlap between chunks.
+     * Embeds a single search query, bypassing the {@link EmbeddingCache}. Concurrent queries are
+     * combined into multi-input requests by the {@link EmbeddingMicroBatcher}.
+     *
+     * @param query the query text
+     * @return a {@link Mono} emitting the embedding vector
+     */
+    private Mono<float[]> requestQueryEmbedding(String query) {
+        return queryEmbeddingBatcher.embed(query);
+    }
+
+    /**
+     * Embeds one batch of texts.
+     * <p>
+     * Texts already present in the {@link EmbeddingCache} are served from it; only the remaining
+     * ones are sent to OpenAI, and their vectors are written back to the cache.
+     *
+     * @param texts the batch of texts
+     * @return a {@link Mono} emitting the embedding vectors in the same order as {@code texts}
+     */
+    private Mono<List<float[]>> embedTexts(List<String> texts) {
+        float[][] vectors = new float[texts.size()][];
+        List<Integer> missIndexes = new ArrayList<>();
+        List<String> missTexts = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            float[] cached = embeddingCache.get(embeddingCacheModel, texts.get(i));
+            if (cached != null) {
+                vectors[i] = cached;
+            } else {
+                missIndexes.add(i);
+                missTexts.add(texts.get(i));
+            }
+        }
+        if (missTexts.isEmpty()) {
+            return Mono.just(Arrays.asList(vectors));
+        }
+        return retrieveEmbeddings(missTexts)
+                .publishOn(Schedulers.boundedElastic())
+                .map(embeddings -> {
+                    for (EmbeddingItem item : embeddings.getData()) {
+                        int index = missIndexes.get(item.getPromptIndex());
+                        String text = texts.get(index);
+                        vectors[index] = EmbeddingVectors.decode(item);
+                        embeddingCache.put(embeddingCacheModel, text, vectors[index]);
+                    }
+                    for (int i = 0; i < vectors.length; i++) {
+                        if (vectors[i] == null) {
+                            throw new IllegalStateException("No embedding returned for chunk " + i);
+                        }
+                    }
+                    log.debug("Embedded batch of {} chunks ({} cached, {} tokens)", texts.size(),
+                            texts.size() - missTexts.size(), embeddings.getUsage().getPromptTokens());
+                    return Arrays.asList(vectors);
+                });
+    }
+
+    /**
+     * Groups a stream of items into embedding batches. A batch is closed before the item whose
+     * text would push it over either the input count limit or the approximate token budget, and
+     * always holds at least one item.
+     *
+     * @param items the items to batch
+     * @param text  extracts the text to be embedded from an item
+     * @param <T>   the item type
+     * @return a {@link Flux} of batches, in input order
+     */
+    private <T> Flux<List<T>> toEmbeddingBatches(Flux<T> items, Function<T, ? extends CharSequence> text) {
+        return Flux.defer(() -> {
+            int[] inputs = {0};
+            int[] tokens = {0};
+            return items.bufferUntil(item -> {
+                int textTokens = estimateTokens(text.apply(item));
+                boolean cut = inputs[0] > 0
+                        && (inputs[0] >= batchMaxInputs || tokens[0] + textTokens > batchMaxTokens);
+                if (cut) {
+                    inputs[0] = 0;
+                    tokens[0] = 0;
+                }
+                inputs[0]++;
+                tokens[0] += textTokens;
+                return cut;
+            }, true);
+        });
+    }
+
+    /**
+     * Roughly estimates the number of tokens in a text, assuming about four characters per token.
+     *
+     * @param text the text to measure
+     * @return the estimated token count
+     */
+    private static int estimateTokens(CharSequence text) {
+        return (text.length() + 3) / 4;
+    }
+
+    /**
+     * A text chunk together with the ID of the point it is stored as.
      *
-     * @param text      The text to be split into chunks.
-     * @param chunkSize The size of each chunk.
-     * @param overlap   The number of overlapping characters between consecutive chunks.
-     * @return A {@link List} of strings, where each string represents a chunk of the original text.
+     * @param id   the deterministic point ID of the chunk, a UUID string
+     * @param text the chunk text, possibly a view into a larger text
      */
-    private List<String> splitText(String text, int chunkSize, int overlap) {
-        List<String> chunks = new ArrayList<>();
-        int start = 0;
+    private record Chunk(String id, CharSequence text) {
 
-        while (start < text.length()) {
-            int end = Math.min(start + chunkSize, text.length());
-            String chunk = text.substring(start, end);
-            chunks.add(chunk);
-            start += chunkSize - overlap;
+        /**
+         * Copies the chunk text into a string of its own, releasing the larger text it may point into.
+         *
+         * @return a chunk holding a string
+         */
+        private Chunk materialize() {
+            return text instanceof String ? this : new Chunk(id, text.toString());
         }
-        return chunks;
     }
 }
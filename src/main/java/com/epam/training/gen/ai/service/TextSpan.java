@@ -0,0 +1,63 @@
+package com.epam.training.gen.ai.service;
+
+/**
+ * A read-only view of a range of characters in a larger text.
+ * <p>
+ * Chunking strategies hand out spans instead of substrings, so producing a chunk costs two
+ * offsets rather than a copy of its characters. The text is only copied when {@link #toString()}
+ * is called, which the ingestion pipeline does once it knows the chunk actually has to be embedded.
+ */
+public final class TextSpan implements CharSequence {
+
+    private final String source;
+    private final int start;
+    private final int end;
+
+    /**
+     * Creates a view of {@code source} from {@code start} (inclusive) to {@code end} (exclusive).
+     *
+     * @param source the text the span points into
+     * @param start  the index of the first character of the span
+     * @param end    the index after the last character of the span
+     * @throws IndexOutOfBoundsException if the range is not within {@code source}
+     */
+    public TextSpan(String source, int start, int end) {
+        if (start < 0 || end > source.length() || start > end) {
+            throw new IndexOutOfBoundsException("Span [" + start + ", " + end + ") out of bounds for length " + source.length());
+        }
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length());
+        }
+        return source.charAt(start + index);
+    }
+
+    @Override
+    public TextSpan subSequence(int from, int to) {
+        if (from < 0 || to > length() || from > to) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length " + length());
+        }
+        return new TextSpan(source, start + from, start + to);
+    }
+
+    /**
+     * Copies the characters of the span into a new string.
+     *
+     * @return the text of the span
+     */
+    @Override
+    public String toString() {
+        return source.substring(start, end);
+    }
+}
@@ -0,0 +1,120 @@
+package com.epam.training.gen.ai.service;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import static com.epam.training.gen.ai.service.ScalarSimilarityKernel.checkLengths;
+
+/**
+ * {@link SimilarityKernel} using the SIMD instructions of the CPU through the JDK Vector API.
+ * <p>
+ * Each loop processes as many floats per step as the widest vector register holds, accumulating
+ * with fused multiply-adds and reducing the lanes once at the end; the remaining tail is handled
+ * by a scalar loop. The int8 dot product widens each byte lane to an int lane, so it loads a
+ * quarter of the register width of bytes per step. This class needs the {@code jdk.incubator.vector} module at runtime, so it is
+ * only loaded by {@link SimilarityKernels} after checking that the module is present.
+ */
+final class VectorApiSimilarityKernel implements SimilarityKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTE_SPECIES = byteSpeciesFor(INT_SPECIES);
+    private static final SimilarityKernel SCALAR = new ScalarSimilarityKernel();
+
+    @Override
+    public String getName() {
+        return "simd-" + SPECIES.vectorBitSize();
+    }
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        checkLengths(a, b);
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(a.length); i < bound; i += SPECIES.length()) {
+            sum = FloatVector.fromArray(SPECIES, a, i).fma(FloatVector.fromArray(SPECIES, b, i), sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    @Override
+    public float cosine(float[] a, float[] b) {
+        checkLengths(a, b);
+        FloatVector dot = FloatVector.zero(SPECIES);
+        FloatVector normA = FloatVector.zero(SPECIES);
+        FloatVector normB = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(a.length); i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, i);
+            dot = va.fma(vb, dot);
+            normA = va.fma(va, normA);
+            normB = vb.fma(vb, normB);
+        }
+        float dotSum = dot.reduceLanes(VectorOperators.ADD);
+        float normASum = normA.reduceLanes(VectorOperators.ADD);
+        float normBSum = normB.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            dotSum += a[i] * b[i];
+            normASum += a[i] * a[i];
+            normBSum += b[i] * b[i];
+        }
+        return normASum == 0 || normBSum == 0 ? 0 : (float) (dotSum / Math.sqrt((double) normASum * normBSum));
+    }
+
+    @Override
+    public float squaredL2(float[] a, float[] b) {
+        checkLengths(a, b);
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(a.length); i < bound; i += SPECIES.length()) {
+            FloatVector diff = FloatVector.fromArray(SPECIES, a, i).sub(FloatVector.fromArray(SPECIES, b, i));
+            sum = diff.fma(diff, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            float d = a[i] - b[i];
+            result += d * d;
+        }
+        return result;
+    }
+
+    @Override
+    public int dot(byte[] a, byte[] b) {
+        if (BYTE_SPECIES == null) {
+            return SCALAR.dot(a, b);
+        }
+        checkLengths(a.length, b.length);
+        IntVector sum = IntVector.zero(INT_SPECIES);
+        int i = 0;
+        for (int bound = BYTE_SPECIES.loopBound(a.length); i < bound; i += BYTE_SPECIES.length()) {
+            IntVector va = (IntVector) ByteVector.fromArray(BYTE_SPECIES, a, i)
+                    .convertShape(VectorOperators.B2I, INT_SPECIES, 0);
+            IntVector vb = (IntVector) ByteVector.fromArray(BYTE_SPECIES, b, i)
+                    .convertShape(VectorOperators.B2I, INT_SPECIES, 0);
+            sum = sum.add(va.mul(vb));
+        }
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            result += a[i] * b[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the byte species with as many lanes as the given int species, or {@code null} if
+     * no vector shape is that narrow.
+     */
+    private static VectorSpecies<Byte> byteSpeciesFor(VectorSpecies<Integer> intSpecies) {
+        int bits = intSpecies.length() * Byte.SIZE;
+        return bits < 64 ? null : VectorSpecies.of(byte.class, VectorShape.forBitSize(bits));
+    }
+}
@@ -0,0 +1,13 @@
+package com.epam.training.gen.ai.service;
+
+import java.util.Map;
+
+/**
+ * A point returned by a {@link VectorStore} search.
+ *
+ * @param id      the identifier of the point
+ * @param score   the cosine similarity between the point and the query
+ * @param payload the metadata stored alongside the point
+ */
+public record VectorMatch(String id, float score, Map<String, String> payload) {
+}
@@ -0,0 +1,13 @@
+package com.epam.training.gen.ai.service;
+
+import java.util.Map;
+
+/**
+ * A vector together with its identifier and payload, as written to a {@link VectorStore}.
+ *
+ * @param id      the identifier of the point, unique within a collection
+ * @param vector  the embedding vector
+ * @param payload the metadata stored alongside the vector, such as the chunk text
+ */
+public record VectorRecord(String id, float[] vector, Map<String, String> payload) {
+}
@@ -0,0 +1,79 @@
+package com.epam.training.gen.ai.service;
+
+import com.epam.training.gen.ai.domain.RecallReport;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Storage and similarity search for embedding vectors, organised in named collections.
+ * <p>
+ * The implementation is selected with the {@code vector-store.type} property. All collections
+ * use cosine similarity.
+ */
+public interface VectorStore {
+
+    /**
+     * Makes sure a collection exists, creating it if it does not. Calling this for an existing
+     * collection is a cheap no-op, and concurrent calls for the same collection are safe.
+     *
+     * @param collection the collection name
+     * @param dimensions the number of dimensions of the vectors in the collection
+     * @return a {@link Mono} completing once the collection is available
+     */
+    Mono<Void> createCollection(String collection, int dimensions);
+
+    /**
+     * Inserts points, replacing any point that already has the same identifier.
+     *
+     * @param collection the collection name
+     * @param records    the points to store
+     * @return a {@link Mono} emitting the number of points written
+     */
+    Mono<Long> upsert(String collection, List<VectorRecord> records);
+
+    /**
+     * Looks up which of the given identifiers are stored, without fetching vectors or payloads.
+     *
+     * @param collection the collection name
+     * @param ids        the identifiers to check
+     * @return a {@link Mono} emitting the subset of {@code ids} that are stored
+     */
+    Mono<Set<String>> existingIds(String collection, Collection<String> ids);
+
+    /**
+     * Finds the points most similar to a query vector.
+     *
+     * @param collection the collection name
+     * @param query      the query vector
+     * @param options    the number of points to skip and return, the minimum similarity of a
+     *                   returned point and the payload fields to return
+     * @return a {@link Mono} emitting the matches, most similar first
+     */
+    Mono<List<VectorMatch>> search(String collection, float[] query, SearchOptions options);
+
+    /**
+     * Deletes points by identifier. Unknown identifiers are ignored.
+     *
+     * @param collection the collection name
+     * @param ids        the identifiers of the points to delete
+     * @return a {@link Mono} completing once the points are deleted
+     */
+    Mono<Void> delete(String collection, Collection<String> ids);
+
+    /**
+     * Measures the recall@k of the approximate search of a collection against exact search.
+     * Stores that cannot run exact searches do not support this.
+     *
+     * @param collection the collection name
+     * @param k          the number of neighbours to compare
+     * @param queries    the maximum number of sampled queries
+     * @return a {@link Mono} emitting the report, or failing with {@link UnsupportedOperationException}
+     */
+    default Mono<RecallReport> measureRecall(String collection, int k, int queries) {
+        return Mono.error(new UnsupportedOperationException(
+                getClass().getSimpleName() + " does not support recall measurement"));
+    }
+}
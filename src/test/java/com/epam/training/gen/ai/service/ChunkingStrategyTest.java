@@ -0,0 +1,164 @@
+package com.epam.training.gen.ai.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for the {@link ChunkingStrategy} implementations, each run against every strategy.
+ */
+class ChunkingStrategyTest {
+
+    private static final List<ChunkingStrategy> STRATEGIES = List.of(
+            new FixedSizeChunkingStrategy(), new SentenceAwareChunkingStrategy());
+
+    private static final String DOCUMENT = """
+            Retrieval starts with chunking. Every chunk is embedded on its own, so it should hold \
+            one idea! Does a chunk ever end mid-word? Only as a last resort.
+
+            A new paragraph starts here. It mentions a few symbols: 😀 and 😎, which take two chars \
+            each. "Quoted sentences end here." (So do bracketed ones.) The end.
+            """;
+
+    @Test
+    void emptyInputHasNoChunks() {
+        for (ChunkingStrategy strategy : STRATEGIES) {
+            ChunkingSettings settings = settings(strategy, 20, 5);
+            assertThat(split(strategy, Flux.empty(), settings)).as(strategy.getName()).isEmpty();
+            assertThat(split(strategy, Flux.just(""), settings)).as(strategy.getName()).isEmpty();
+            assertThat(split(strategy, Flux.just("   ", "\n\n", " "), settings)).as(strategy.getName()).isEmpty();
+        }
+    }
+
+    @Test
+    void inputShorterThanAChunkIsOneTrimmedChunk() {
+        for (ChunkingStrategy strategy : STRATEGIES) {
+            assertThat(split(strategy, Flux.just("  Short ", "text.  "), settings(strategy, 20, 5)))
+                    .as(strategy.getName())
+                    .containsExactly("Short text.");
+        }
+    }
+
+    @Test
+    void overlongSentenceIsCutWithinTheChunkSize() {
+        String sentence = "one two three four five six seven eight nine ten eleven twelve thirteen fourteen";
+        StringBuilder letters = new StringBuilder();
+        for (int i = 0; i < 95; i++) {
+            letters.append((char) ('a' + i % 26));
+        }
+        String word = letters.toString();
+        for (ChunkingStrategy strategy : STRATEGIES) {
+            ChunkingSettings settings = settings(strategy, 20, 5);
+
+            List<String> sentenceChunks = split(strategy, segments(sentence, 7), settings);
+            assertThat(sentenceChunks).as(strategy.getName()).hasSizeGreaterThan(1);
+            assertCoveredInOrder(sentence, sentenceChunks, settings);
+
+            List<String> wordChunks = split(strategy, segments(word, 7), settings);
+            assertThat(wordChunks).as(strategy.getName()).hasSizeGreaterThan(1);
+            assertCoveredInOrder(word, wordChunks, settings);
+        }
+    }
+
+    @Test
+    void sentenceAwareChunksOfAnOverlongSentenceEndAndStartAtWordBreaks() {
+        String sentence = "one two three four five six seven eight nine ten eleven twelve thirteen fourteen";
+        ChunkingStrategy strategy = new SentenceAwareChunkingStrategy();
+
+        for (String chunk : split(strategy, Flux.just(sentence), settings(strategy, 20, 5))) {
+            int start = sentence.indexOf(chunk);
+            int end = start + chunk.length();
+            assertThat(start == 0 || sentence.charAt(start - 1) == ' ').as(chunk).isTrue();
+            assertThat(end == sentence.length() || sentence.charAt(end) == ' ').as(chunk).isTrue();
+        }
+    }
+
+    @Test
+    void largestOverlapStillMovesForward() {
+        for (ChunkingStrategy strategy : STRATEGIES) {
+            ChunkingSettings settings = settings(strategy, 16, 15);
+
+            List<String> chunks = split(strategy, segments(DOCUMENT, 11), settings);
+
+            assertThat(chunks).as(strategy.getName()).hasSizeLessThanOrEqualTo(DOCUMENT.length());
+            assertCoveredInOrder(DOCUMENT, chunks, settings);
+        }
+    }
+
+    @Test
+    void chunksCoverTheWholeInputInOrderWhateverTheSegmentSize() {
+        for (ChunkingStrategy strategy : STRATEGIES) {
+            for (int segmentSize : new int[]{1, 3, 17, DOCUMENT.length()}) {
+                for (int[] sizeAndOverlap : new int[][]{{10, 0}, {40, 10}, {64, 63}}) {
+                    ChunkingSettings settings = settings(strategy, sizeAndOverlap[0], sizeAndOverlap[1]);
+
+                    List<String> chunks = split(strategy, segments(DOCUMENT, segmentSize), settings);
+
+                    assertCoveredInOrder(DOCUMENT, chunks, settings);
+                }
+            }
+        }
+    }
+
+    @Test
+    void chunksDoNotDependOnHowTheInputIsSegmented() {
+        for (ChunkingStrategy strategy : STRATEGIES) {
+            ChunkingSettings settings = settings(strategy, 40, 10);
+            List<String> whole = split(strategy, Flux.just(DOCUMENT), settings);
+
+            for (int segmentSize : new int[]{1, 5, 33}) {
+                assertThat(split(strategy, segments(DOCUMENT, segmentSize), settings))
+                        .as(strategy.getName() + " in segments of " + segmentSize)
+                        .isEqualTo(whole);
+            }
+        }
+    }
+
+    private static ChunkingSettings settings(ChunkingStrategy strategy, int chunkSize, int overlap) {
+        return new ChunkingSettings(strategy.getName(), chunkSize, overlap);
+    }
+
+    private static List<String> split(ChunkingStrategy strategy, Flux<String> segments, ChunkingSettings settings) {
+        return strategy.split(segments, settings)
+                .map(TextSpan::toString)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+    }
+
+    private static Flux<String> segments(String text, int size) {
+        List<String> segments = new ArrayList<>();
+        for (int i = 0; i < text.length(); i += size) {
+            segments.add(text.substring(i, Math.min(text.length(), i + size)));
+        }
+        return Flux.fromIterable(segments);
+    }
+
+    /**
+     * Asserts that every chunk fits the chunk size, is trimmed and keeps surrogate pairs together,
+     * that each chunk starts no earlier than the previous one and no later than its end, and that only
+     * whitespace is left outside the chunks.
+     */
+    private static void assertCoveredInOrder(String text, List<String> chunks, ChunkingSettings settings) {
+        String description = settings.toString();
+        int previousStart = -1;
+        int covered = 0;
+        for (String chunk : chunks) {
+            assertThat(chunk.length()).as(description).isBetween(1, settings.chunkSize());
+            assertThat(chunk).as(description).isEqualTo(chunk.strip());
+            assertThat(Character.isHighSurrogate(chunk.charAt(chunk.length() - 1))).as(description).isFalse();
+            assertThat(Character.isLowSurrogate(chunk.charAt(0))).as(description).isFalse();
+
+            int start = text.indexOf(chunk, Math.max(0, previousStart));
+            assertThat(start).as(description + ": " + chunk + " after " + previousStart).isNotNegative();
+            assertThat(text.substring(covered, Math.max(covered, start))).as(description).isBlank();
+            previousStart = start;
+            covered = Math.max(covered, start + chunk.length());
+        }
+        assertThat(text.substring(covered)).as(description).isBlank();
+    }
+}
@@ -0,0 +1,91 @@
+package com.epam.training.gen.ai.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link ConversationLogSegment}.
+ */
+class ConversationLogSegmentTest {
+
+    private static final int CAPACITY = 1024;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void recordsAreReplayedInWriteOrder() throws IOException {
+        Path file = directory.resolve("segment.log");
+        try (ConversationLogSegment segment = new ConversationLogSegment(0, file, CAPACITY)) {
+            segment.append(body("first"));
+            segment.append(body("second"));
+        }
+
+        try (ConversationLogSegment segment = new ConversationLogSegment(0, file, CAPACITY)) {
+            List<String> records = replay(segment);
+
+            assertThat(records).containsExactly("first", "second");
+            assertThat(segment.size()).isEqualTo(2 * ConversationLogSegment.HEADER_BYTES + "firstsecond".length());
+        }
+    }
+
+    @Test
+    void tornRecordIsDiscardedAndOverwrittenByTheNextAppend() throws IOException {
+        Path file = directory.resolve("segment.log");
+        int tornOffset;
+        try (ConversationLogSegment segment = new ConversationLogSegment(0, file, CAPACITY)) {
+            segment.append(body("complete"));
+            tornOffset = segment.size();
+        }
+        // A crash after the length was written, but before the whole body reached the file
+        try (FileChannel channel = FileChannel.open(file, WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(ConversationLogSegment.HEADER_BYTES + 4).order(ByteOrder.BIG_ENDIAN);
+            torn.putInt(100).putInt(12345).put("torn".getBytes(StandardCharsets.UTF_8)).flip();
+            channel.write(torn, tornOffset);
+        }
+
+        try (ConversationLogSegment segment = new ConversationLogSegment(0, file, CAPACITY)) {
+            assertThat(replay(segment)).containsExactly("complete");
+            assertThat(segment.size()).isEqualTo(tornOffset);
+
+            assertThat(segment.append(body("next"))).isEqualTo(tornOffset);
+        }
+
+        try (ConversationLogSegment segment = new ConversationLogSegment(0, file, CAPACITY)) {
+            assertThat(replay(segment)).containsExactly("complete", "next");
+        }
+    }
+
+    @Test
+    void appendReportsAFullSegment() throws IOException {
+        try (ConversationLogSegment segment = new ConversationLogSegment(0, directory.resolve("segment.log"), CAPACITY)) {
+            ByteBuffer large = ByteBuffer.allocate(CAPACITY / 2);
+
+            assertThat(segment.append(large.duplicate())).isZero();
+            assertThat(segment.append(large.duplicate())).isNegative();
+            assertThat(segment.append(body("small"))).isPositive();
+        }
+    }
+
+    private static ByteBuffer body(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> replay(ConversationLogSegment segment) {
+        List<String> records = new ArrayList<>();
+        segment.replay((offset, body) -> records.add(StandardCharsets.UTF_8.decode(body).toString()));
+        return records;
+    }
+}
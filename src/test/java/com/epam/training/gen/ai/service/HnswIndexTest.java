@@ -0,0 +1,143 @@
+package com.epam.training.gen.ai.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link HnswIndex} with deleted and replaced points.
+ */
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 8;
+    private static final SearchOptions TOP_TEN = new SearchOptions(10, 0, -1, null);
+
+    private final Random random = new Random(42);
+    private HnswIndex index;
+
+    @TempDir
+    private Path directory;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (index != null) {
+            index.close();
+        }
+    }
+
+    @Test
+    void searchFindsAsManyLiveMatchesAsAskedForAmongMostlyDeletedNodes() throws IOException {
+        for (boolean quantize : new boolean[]{false, true}) {
+            index = open("points-" + quantize, quantize, 0.99);
+            List<VectorRecord> records = records(200, 0);
+            index.upsert(records);
+            List<String> deleted = new ArrayList<>();
+            for (int i = 0; i < 180; i++) {
+                deleted.add(records.get(i).id());
+            }
+            index.delete(deleted);
+
+            List<VectorMatch> matches = index.search(randomVector(), TOP_TEN, 10, 1);
+
+            assertThat(matches).hasSize(10).noneMatch(match -> deleted.contains(match.id()));
+            index.close();
+            index = null;
+        }
+    }
+
+    @Test
+    void reingestingTheSamePointsDoesNotGrowTheIndexWithoutBound() throws IOException {
+        index = open("points", false, 0.3);
+        List<VectorRecord> latest = List.of();
+        for (int round = 0; round < 10; round++) {
+            latest = records(100, round);
+            index.upsert(latest);
+        }
+
+        assertThat(index.size()).isEqualTo(100);
+        assertLatestFound(latest);
+        index.close();
+        index = null;
+        try (MappedVectorStorage vectors = new MappedVectorStorage(directory.resolve("points.vec"), DIMENSIONS,
+                new ScalarSimilarityKernel())) {
+            assertThat(vectors.size()).isLessThan(100 * 2);
+        }
+
+        index = open("points", false, 0.3);
+        assertThat(index.size()).isEqualTo(100);
+        assertLatestFound(latest);
+    }
+
+    @Test
+    void deletingMostPointsCompactsTheIndex() throws IOException {
+        index = open("points", true, 0.3);
+        List<VectorRecord> records = records(100, 0);
+        index.upsert(records);
+
+        List<String> deleted = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            deleted.add(records.get(i).id());
+        }
+        index.delete(deleted);
+
+        assertThat(index.size()).isEqualTo(40);
+        assertLatestFound(records.subList(60, 100));
+        assertThat(index.existingIds(deleted)).isEmpty();
+    }
+
+    @Test
+    void compactionInterruptedBeforeReplacingTheJournalIsDropped() throws IOException {
+        index = open("points", false, 0.99);
+        List<VectorRecord> records = records(20, 0);
+        index.upsert(records);
+        index.close();
+        Files.write(directory.resolve("points.vec.compacting"), new byte[64]);
+        Files.write(directory.resolve("points.journal.compacting"), new byte[16]);
+
+        index = open("points", false, 0.99);
+
+        assertThat(index.size()).isEqualTo(20);
+        assertLatestFound(records);
+        assertThat(directory.resolve("points.vec.compacting")).doesNotExist();
+        assertThat(directory.resolve("points.journal.compacting")).doesNotExist();
+    }
+
+    private HnswIndex open(String name, boolean quantize, double compactionThreshold) throws IOException {
+        return HnswIndex.open(directory, name, DIMENSIONS, 8, 64, quantize, compactionThreshold,
+                new ScalarSimilarityKernel());
+    }
+
+    private void assertLatestFound(List<VectorRecord> records) throws IOException {
+        for (VectorRecord record : records) {
+            List<VectorMatch> matches = index.search(record.vector(), new SearchOptions(1, 0, -1, null), 64, 4);
+            assertThat(matches).extracting(VectorMatch::id).containsExactly(record.id());
+            assertThat(matches.get(0).payload()).isEqualTo(record.payload());
+        }
+    }
+
+    private List<VectorRecord> records(int count, int round) {
+        List<VectorRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(new VectorRecord("point-" + i, randomVector(), Map.of("round", String.valueOf(round))));
+        }
+        return records;
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,109 @@
+package com.epam.training.gen.ai.service;
+
+import com.epam.training.gen.ai.service.ConversationStore.StoredConversation;
+import com.epam.training.gen.ai.service.ConversationStore.StoredTurn;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link LogConversationStore}, with segments small enough to fill within a test.
+ */
+class LogConversationStoreTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private LogConversationStore store;
+
+    @TempDir
+    private Path directory;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = open();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+    }
+
+    @Test
+    void savedConversationsSurviveReopening() throws IOException {
+        store.save("alice", conversation("summary", 1));
+        store.save("bob", conversation(null, 2));
+        store.close();
+
+        store = open();
+
+        assertThat(store.load("alice")).isEqualTo(conversation("summary", 1));
+        assertThat(store.load("bob")).isEqualTo(conversation(null, 2));
+        assertThat(store.load("carol")).isNull();
+    }
+
+    @Test
+    void compactionOfMostlyDeadSegmentsKeepsTheLatestConversationOfEveryUser() throws IOException {
+        store.save("alice", conversation("kept", 1));
+        store.save("bob", conversation(null, 1));
+        for (int version = 0; version < 100; version++) {
+            store.save("carol", conversation(null, version));
+        }
+        long segmentsBefore = segmentFiles();
+        assertThat(segmentsBefore).isGreaterThan(2);
+
+        store.compact();
+
+        assertThat(segmentFiles()).isLessThan(segmentsBefore);
+        assertThat(store.load("alice")).isEqualTo(conversation("kept", 1));
+        assertThat(store.load("bob")).isEqualTo(conversation(null, 1));
+        assertThat(store.load("carol")).isEqualTo(conversation(null, 99));
+        assertThat(meterRegistry.get("chat.memory.store.conversations").gauge().value()).isEqualTo(3);
+
+        store.close();
+        store = open();
+
+        assertThat(store.load("alice")).isEqualTo(conversation("kept", 1));
+        assertThat(store.load("bob")).isEqualTo(conversation(null, 1));
+        assertThat(store.load("carol")).isEqualTo(conversation(null, 99));
+    }
+
+    @Test
+    void savesAfterCompactionAreLoaded() throws IOException {
+        for (int version = 0; version < 100; version++) {
+            store.save("alice", conversation(null, version));
+        }
+        store.compact();
+
+        store.save("alice", conversation("after", 100));
+
+        assertThat(store.load("alice")).isEqualTo(conversation("after", 100));
+    }
+
+    private LogConversationStore open() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        return new LogConversationStore(directory.toString(), DataSize.ofKilobytes(1), Duration.ofDays(1),
+                Duration.ofHours(1), 0.5, meterRegistry);
+    }
+
+    private long segmentFiles() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static StoredConversation conversation(String summary, int version) {
+        return new StoredConversation(summary, List.of(
+                new StoredTurn("Question " + version, "Answer " + version),
+                new StoredTurn("Follow-up " + version, "Details " + version)));
+    }
+}
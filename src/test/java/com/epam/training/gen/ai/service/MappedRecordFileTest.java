@@ -0,0 +1,113 @@
+package com.epam.training.gen.ai.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests for {@link MappedRecordFile}, mapped in regions of three records.
+ */
+class MappedRecordFileTest {
+
+    private static final int MAGIC = 0x54455354;
+    private static final int RECORD_BYTES = Long.BYTES;
+    private static final long REGION_BYTES = 3 * RECORD_BYTES;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void recordsAppendedAcrossRegionBoundariesAreReadBack() throws IOException {
+        try (MappedRecordFile file = open(7)) {
+            for (long value = 0; value < 8; value++) {
+                append(file, value);
+            }
+
+            assertThat(file.recordsPerRegion()).isEqualTo(3);
+            assertThat(file.size()).isEqualTo(8);
+            for (int slot = 0; slot < 8; slot++) {
+                assertThat(read(file, slot)).isEqualTo(slot);
+            }
+        }
+    }
+
+    @Test
+    void recordsSurviveReopening() throws IOException {
+        try (MappedRecordFile file = open(7)) {
+            for (long value = 0; value < 5; value++) {
+                append(file, value * 10);
+            }
+        }
+
+        try (MappedRecordFile file = open(7)) {
+            assertThat(file.size()).isEqualTo(5);
+            assertThat(read(file, 4)).isEqualTo(40);
+            append(file, 50);
+            assertThat(read(file, 5)).isEqualTo(50);
+        }
+        assertThat(MappedRecordFile.readParameter(directory.resolve("records.bin"), MAGIC)).isEqualTo(7);
+    }
+
+    @Test
+    void truncatedRecordsAreOverwrittenByTheNextAppend() throws IOException {
+        try (MappedRecordFile file = open(7)) {
+            for (long value = 0; value < 5; value++) {
+                append(file, value);
+            }
+
+            file.truncate(2);
+            file.truncate(4);
+            assertThat(file.size()).isEqualTo(2);
+            assertThat(append(file, 99)).isEqualTo(2);
+        }
+
+        try (MappedRecordFile file = open(7)) {
+            assertThat(file.size()).isEqualTo(3);
+            assertThat(read(file, 2)).isEqualTo(99);
+        }
+    }
+
+    @Test
+    void fileOfAnotherFormatIsRejected() throws IOException {
+        open(7).close();
+
+        Path path = directory.resolve("records.bin");
+        assertThatThrownBy(() -> new MappedRecordFile(path, MAGIC + 1, 7, RECORD_BYTES, REGION_BYTES))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("expected format");
+        assertThatThrownBy(() -> new MappedRecordFile(path, MAGIC, 7, 2 * RECORD_BYTES, REGION_BYTES))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("expected format");
+        assertThatThrownBy(() -> MappedRecordFile.readParameter(path, MAGIC + 1))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void fileOfAnotherParameterIsRejected() throws IOException {
+        open(7).close();
+
+        assertThatThrownBy(() -> open(8))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("created for 7 dimensions");
+    }
+
+    private MappedRecordFile open(int parameter) throws IOException {
+        return new MappedRecordFile(directory.resolve("records.bin"), MAGIC, parameter, RECORD_BYTES, REGION_BYTES);
+    }
+
+    private static int append(MappedRecordFile file, long value) throws IOException {
+        int slot = file.prepareAppend();
+        file.regionOf(slot).putLong(file.offsetOf(slot), value);
+        file.commitAppend();
+        return slot;
+    }
+
+    private static long read(MappedRecordFile file, int slot) {
+        return file.regionOf(slot).getLong(file.offsetOf(slot));
+    }
+}
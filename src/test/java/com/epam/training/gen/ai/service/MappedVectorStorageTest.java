@@ -0,0 +1,113 @@
+package com.epam.training.gen.ai.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for {@link MappedVectorStorage}, mapped in regions of two vectors.
+ */
+class MappedVectorStorageTest {
+
+    private static final int DIMENSIONS = 4;
+    private static final long REGION_BYTES = 2 * DIMENSIONS * Float.BYTES;
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void vectorsAppendedAcrossRegionBoundariesAreReadBack() throws IOException {
+        try (MappedVectorStorage storage = open(DIMENSIONS)) {
+            for (int slot = 0; slot < 5; slot++) {
+                assertThat(storage.append(vector(slot))).isEqualTo(slot);
+            }
+
+            assertThat(storage.size()).isEqualTo(5);
+            float[] target = new float[DIMENSIONS];
+            for (int slot = 0; slot < 5; slot++) {
+                storage.read(slot, target);
+                assertThat(target).containsExactly(vector(slot));
+            }
+        }
+    }
+
+    @Test
+    void dotProductsSpanRegions() throws IOException {
+        try (MappedVectorStorage storage = open(DIMENSIONS)) {
+            for (int slot = 0; slot < 5; slot++) {
+                storage.append(vector(slot));
+            }
+
+            assertThat(storage.dot(4, new float[]{1, 0, 0, 0})).isEqualTo(4f);
+            assertThat(storage.dot(0, 4)).isCloseTo(dot(vector(0), vector(4)), within(1e-4f));
+        }
+    }
+
+    @Test
+    void vectorsSurviveReopening() throws IOException {
+        try (MappedVectorStorage storage = open(DIMENSIONS)) {
+            for (int slot = 0; slot < 3; slot++) {
+                storage.append(vector(slot));
+            }
+        }
+
+        try (MappedVectorStorage storage = open(DIMENSIONS)) {
+            assertThat(storage.size()).isEqualTo(3);
+            assertThat(storage.append(vector(3))).isEqualTo(3);
+            float[] target = new float[DIMENSIONS];
+            storage.read(2, target);
+            assertThat(target).containsExactly(vector(2));
+        }
+        assertThat(MappedVectorStorage.readDimensions(directory.resolve("vectors.vec"))).isEqualTo(DIMENSIONS);
+    }
+
+    @Test
+    void vectorOfAnotherDimensionIsRejected() throws IOException {
+        try (MappedVectorStorage storage = open(DIMENSIONS)) {
+            assertThatThrownBy(() -> storage.append(new float[DIMENSIONS + 1]))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void fileOfAnotherDimensionIsRejected() throws IOException {
+        open(DIMENSIONS).close();
+
+        assertThatThrownBy(() -> open(DIMENSIONS * 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void fileOfAnotherFormatIsRejected() throws IOException {
+        Path path = directory.resolve("vectors.vec");
+        new QuantizedVectorStorage(path, DIMENSIONS, new ScalarSimilarityKernel()).close();
+
+        assertThatThrownBy(() -> open(DIMENSIONS))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("expected format");
+        assertThatThrownBy(() -> MappedVectorStorage.readDimensions(path))
+                .isInstanceOf(IOException.class);
+    }
+
+    private MappedVectorStorage open(int dimensions) throws IOException {
+        return new MappedVectorStorage(directory.resolve("vectors.vec"), dimensions, new ScalarSimilarityKernel(), REGION_BYTES);
+    }
+
+    private static float[] vector(int slot) {
+        return new float[]{slot, -slot, slot * 0.5f, 1};
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
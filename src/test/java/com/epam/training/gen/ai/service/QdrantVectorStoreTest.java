@@ -0,0 +1,80 @@
+package com.epam.training.gen.ai.service;
+
+import com.epam.training.gen.ai.configuration.QdrantCollectionProperties;
+import com.google.common.util.concurrent.Futures;
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.grpc.Collections;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the collection checks of {@link QdrantVectorStore}.
+ */
+class QdrantVectorStoreTest {
+
+    private QdrantClient qdrantClient;
+    private QdrantVectorStore store;
+
+    @BeforeEach
+    void setUp() {
+        qdrantClient = mock(QdrantClient.class);
+        QdrantCollectionProperties properties = new QdrantCollectionProperties();
+        properties.getHnsw().setM(16);
+        properties.getHnsw().setEfConstruct(100);
+        properties.getQuantization().setType("none");
+        store = new QdrantVectorStore(qdrantClient, properties, true);
+    }
+
+    @Test
+    void existingCollectionOfAnotherDimensionIsRejected() {
+        when(qdrantClient.collectionExistsAsync(anyString())).thenReturn(Futures.immediateFuture(true));
+        when(qdrantClient.getCollectionInfoAsync(anyString())).thenReturn(Futures.immediateFuture(collectionInfo(16)));
+
+        assertThatThrownBy(() -> store.createCollection("context", 8).block(Duration.ofSeconds(5)))
+                .isInstanceOf(IncompatibleCollectionException.class);
+    }
+
+    @Test
+    void collectionCreatedConcurrentlyWithAnotherDimensionIsRejected() {
+        when(qdrantClient.collectionExistsAsync(anyString()))
+                .thenReturn(Futures.immediateFuture(false), Futures.immediateFuture(true));
+        when(qdrantClient.createCollectionAsync(any(Collections.CreateCollection.class)))
+                .thenReturn(Futures.immediateFailedFuture(new IllegalStateException("Collection already exists")));
+        when(qdrantClient.getCollectionInfoAsync(anyString())).thenReturn(Futures.immediateFuture(collectionInfo(16)));
+
+        assertThatThrownBy(() -> store.createCollection("context", 8).block(Duration.ofSeconds(5)))
+                .isInstanceOf(IncompatibleCollectionException.class);
+        verify(qdrantClient).getCollectionInfoAsync("context");
+    }
+
+    @Test
+    void failedCreationOfAStillMissingCollectionFails() {
+        when(qdrantClient.collectionExistsAsync(anyString())).thenReturn(Futures.immediateFuture(false));
+        when(qdrantClient.createCollectionAsync(any(Collections.CreateCollection.class)))
+                .thenReturn(Futures.immediateFailedFuture(new IllegalStateException("Qdrant is unavailable")));
+
+        assertThatThrownBy(() -> store.createCollection("context", 8).block(Duration.ofSeconds(5)))
+                .hasMessageContaining("Qdrant is unavailable");
+    }
+
+    private static Collections.CollectionInfo collectionInfo(int dimensions) {
+        return Collections.CollectionInfo.newBuilder()
+                .setConfig(Collections.CollectionConfig.newBuilder()
+                        .setParams(Collections.CollectionParams.newBuilder()
+                                .setVectorsConfig(Collections.VectorsConfig.newBuilder()
+                                        .setParams(Collections.VectorParams.newBuilder()
+                                                .setSize(dimensions)
+                                                .setDistance(Collections.Distance.Cosine))))
+                        .setHnswConfig(Collections.HnswConfigDiff.newBuilder().setM(16).setEfConstruct(100)))
+                .build();
+    }
+}
@@ -0,0 +1,165 @@
+package com.epam.training.gen.ai.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Tests for {@link QuantizedVectorStorage}, mapped in regions of two vectors.
+ */
+class QuantizedVectorStorageTest {
+
+    private static final int DIMENSIONS = 64;
+    private static final long REGION_BYTES = 2L * QuantizedVectorStorage.bytesPerVector(DIMENSIONS);
+
+    private final Random random = new Random(42);
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void estimatedDotProductIsWithinTheQuantizationErrorOfTheExactOne() throws IOException {
+        try (QuantizedVectorStorage storage = open(DIMENSIONS)) {
+            float[][] vectors = new float[5][];
+            for (int slot = 0; slot < vectors.length; slot++) {
+                vectors[slot] = randomVector();
+                assertThat(storage.append(vectors[slot])).isEqualTo(slot);
+            }
+
+            for (int trial = 0; trial < 20; trial++) {
+                float[] query = randomVector();
+                QuantizedVectorStorage.Query quantized = storage.quantize(query);
+                for (int slot = 0; slot < vectors.length; slot++) {
+                    float stepOfStored = storage.quantize(vectors[slot]).scale();
+                    assertThat(storage.dot(slot, quantized)).isCloseTo(dot(vectors[slot], query),
+                            within(errorBound(vectors[slot], stepOfStored, query, quantized.scale())));
+                }
+            }
+        }
+    }
+
+    @Test
+    void constantVectorIsStoredExactly() throws IOException {
+        try (QuantizedVectorStorage storage = open(DIMENSIONS)) {
+            float[] constant = new float[DIMENSIONS];
+            Arrays.fill(constant, 0.25f);
+            storage.append(constant);
+
+            float[] query = randomVector();
+            assertThat(storage.dot(0, storage.quantize(query)))
+                    .isCloseTo(dot(constant, query), within(errorBound(constant, 0, query, storage.quantize(query).scale())));
+        }
+    }
+
+    @Test
+    void vectorsSurviveReopening() throws IOException {
+        float[][] vectors = {randomVector(), randomVector(), randomVector()};
+        float[] query = randomVector();
+        float[] before = new float[vectors.length];
+        try (QuantizedVectorStorage storage = open(DIMENSIONS)) {
+            for (int slot = 0; slot < vectors.length; slot++) {
+                storage.append(vectors[slot]);
+                before[slot] = storage.dot(slot, storage.quantize(query));
+            }
+        }
+
+        try (QuantizedVectorStorage storage = open(DIMENSIONS)) {
+            assertThat(storage.size()).isEqualTo(vectors.length);
+            for (int slot = 0; slot < vectors.length; slot++) {
+                assertThat(storage.dot(slot, storage.quantize(query))).isEqualTo(before[slot]);
+            }
+        }
+    }
+
+    @Test
+    void truncatedVectorsAreOverwrittenByTheNextAppend() throws IOException {
+        float[] replacement = randomVector();
+        float[] query = randomVector();
+        try (QuantizedVectorStorage storage = open(DIMENSIONS)) {
+            for (int slot = 0; slot < 4; slot++) {
+                storage.append(randomVector());
+            }
+
+            storage.truncate(1);
+            assertThat(storage.size()).isEqualTo(1);
+            assertThat(storage.append(replacement)).isEqualTo(1);
+        }
+
+        try (QuantizedVectorStorage storage = open(DIMENSIONS)) {
+            assertThat(storage.size()).isEqualTo(2);
+            QuantizedVectorStorage.Query quantized = storage.quantize(query);
+            assertThat(storage.dot(1, quantized)).isCloseTo(dot(replacement, query),
+                    within(errorBound(replacement, storage.quantize(replacement).scale(), query, quantized.scale())));
+        }
+    }
+
+    @Test
+    void vectorOfAnotherDimensionIsRejected() throws IOException {
+        try (QuantizedVectorStorage storage = open(DIMENSIONS)) {
+            assertThatThrownBy(() -> storage.append(new float[DIMENSIONS - 1]))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> storage.quantize(new float[DIMENSIONS + 1]))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void fileOfAnotherDimensionIsRejected() throws IOException {
+        open(DIMENSIONS).close();
+
+        // The record size differs along with the dimension, so the format check fails first
+        assertThatThrownBy(() -> open(DIMENSIONS / 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void fileOfAnotherFormatIsRejected() throws IOException {
+        Path path = directory.resolve("vectors.i8");
+        // A float vector of 19 dimensions has the record size of a quantized vector of 64
+        new MappedVectorStorage(path, 19, new ScalarSimilarityKernel()).close();
+
+        assertThatThrownBy(() -> open(DIMENSIONS))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("expected format");
+    }
+
+    private QuantizedVectorStorage open(int dimensions) throws IOException {
+        return new QuantizedVectorStorage(directory.resolve("vectors.i8"), dimensions, new ScalarSimilarityKernel(), REGION_BYTES);
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        return vector;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Bounds the error of a quantized dot product: every value is off by at most half its step.
+     */
+    private static float errorBound(float[] a, float stepOfA, float[] b, float stepOfB) {
+        float bound = 0;
+        for (int i = 0; i < a.length; i++) {
+            bound += Math.abs(a[i]) * stepOfB / 2 + Math.abs(b[i]) * stepOfA / 2 + stepOfA * stepOfB / 4;
+        }
+        // Leave room for float rounding of the estimate
+        return bound + 1e-3f;
+    }
+}
@@ -0,0 +1,150 @@
+package com.epam.training.gen.ai.service;
+
+import com.epam.training.gen.ai.domain.IngestionJobStatus;
+import com.epam.training.gen.ai.domain.IngestionJobStatus.State;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockMultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link RagService} uploads running through a real {@link IngestionJobService}.
+ */
+class RagServiceTest {
+
+    private SimpleVectorService simpleVectorService;
+    private IngestionJobService ingestionJobService;
+    private RagService ragService;
+    private MockMultipartFile upload;
+
+    @TempDir
+    private Path uploadDir;
+
+    @BeforeEach
+    void setUp() {
+        simpleVectorService = mock(SimpleVectorService.class);
+        PdfTextExtractor pdfTextExtractor = mock(PdfTextExtractor.class);
+        when(pdfTextExtractor.extractText(any())).thenReturn(Flux.just("text"));
+        when(simpleVectorService.processAndSaveText(anyString(), any(), any())).thenReturn(Mono.just(3L));
+        ingestionJobService = new IngestionJobService(1, 4, 16, new MockEnvironment());
+        ragService = new RagService(simpleVectorService, pdfTextExtractor, ingestionJobService, uploadDir.toString());
+        upload = new MockMultipartFile("file", "context.pdf", "application/pdf",
+                UUID.randomUUID().toString().getBytes());
+    }
+
+    @AfterEach
+    void tearDown() {
+        ingestionJobService.shutdown();
+    }
+
+    @Test
+    void cancellingQueuedUploadAllowsSameContentToBeUploadedAgain() throws Exception {
+        // Occupy the only worker, so that the upload stays queued
+        IngestionJobStatus blocker = ingestionJobService.submit("blocker", progress -> Mono.never());
+
+        IngestionJobStatus queued = ragService.submitContext(upload);
+        assertThat(queued.getState()).isEqualTo(State.QUEUED);
+        assertThat(ingestionJobService.cancel(queued.getJobId()))
+                .hasValueSatisfying(status -> assertThat(status.getState()).isEqualTo(State.CANCELLED));
+
+        IngestionJobStatus retried = ragService.submitContext(upload);
+        assertThat(retried.getState()).isEqualTo(State.QUEUED);
+
+        ingestionJobService.cancel(blocker.getJobId());
+        assertThat(awaitFinished(retried.getJobId()).getState()).isEqualTo(State.SUCCEEDED);
+    }
+
+    @Test
+    void uploadsQueuedAtShutdownAreForgotten() throws Exception {
+        ingestionJobService.submit("blocker", progress -> Mono.never());
+        IngestionJobStatus queued = ragService.submitContext(upload);
+
+        ingestionJobService.shutdown();
+
+        assertThat(ingestionJobService.getStatus(queued.getJobId()))
+                .hasValueSatisfying(status -> assertThat(status.getState()).isEqualTo(State.CANCELLED));
+        assertThat(storedFiles()).isEmpty();
+        verify(simpleVectorService, never()).processAndSaveText(anyString(), any(), any());
+    }
+
+    @Test
+    void identicalUploadJoinsTheJobStillIngestingIt() throws Exception {
+        IngestionJobStatus blocker = ingestionJobService.submit("blocker", progress -> Mono.never());
+        IngestionJobStatus first = ragService.submitContext(upload);
+
+        IngestionJobStatus second = ragService.submitContext(upload);
+
+        assertThat(second.getJobId()).isEqualTo(first.getJobId());
+        ingestionJobService.cancel(blocker.getJobId());
+        assertThat(awaitFinished(first.getJobId()).getState()).isEqualTo(State.SUCCEEDED);
+        verify(simpleVectorService, times(1)).processAndSaveText(anyString(), any(), any());
+    }
+
+    @Test
+    void uploadAfterFailedIngestionIsIngestedAgain() throws Exception {
+        when(simpleVectorService.processAndSaveText(anyString(), any(), any()))
+                .thenReturn(Mono.error(new IllegalStateException("Embedding failed")), Mono.just(3L));
+        IngestionJobStatus failed = ragService.submitContext(upload);
+        assertThat(awaitFinished(failed.getJobId()).getState()).isEqualTo(State.FAILED);
+
+        IngestionJobStatus retried = ragService.submitContext(upload);
+
+        assertThat(awaitFinished(retried.getJobId()).getState()).isEqualTo(State.SUCCEEDED);
+    }
+
+    @Test
+    void storedFileIsKeptOnlyWhenItsContentIsStored() throws Exception {
+        when(simpleVectorService.processAndSaveText(anyString(), any(), any()))
+                .thenReturn(Mono.error(new IllegalStateException("Embedding failed")), Mono.just(3L));
+        IngestionJobStatus failed = ragService.submitContext(upload);
+        assertThat(awaitFinished(failed.getJobId()).getState()).isEqualTo(State.FAILED);
+        assertThat(storedFiles()).isEmpty();
+
+        IngestionJobStatus stored = ragService.submitContext(upload);
+
+        assertThat(awaitFinished(stored.getJobId()).getState()).isEqualTo(State.SUCCEEDED);
+        assertThat(storedFiles()).hasSize(1);
+    }
+
+    @Test
+    void uploadOfStoredContentIsCheckedAgainstTheVectorStore() throws Exception {
+        when(simpleVectorService.processAndSaveText(anyString(), any(), any())).thenReturn(Mono.just(3L), Mono.just(0L));
+        IngestionJobStatus stored = ragService.submitContext(upload);
+        assertThat(awaitFinished(stored.getJobId()).getState()).isEqualTo(State.SUCCEEDED);
+
+        IngestionJobStatus again = ragService.submitContext(upload);
+
+        assertThat(awaitFinished(again.getJobId()).getState()).isEqualTo(State.SKIPPED);
+        verify(simpleVectorService, times(2)).processAndSaveText(anyString(), any(), any());
+    }
+
+    private List<Path> storedFiles() throws IOException {
+        try (var files = Files.list(uploadDir)) {
+            return files.toList();
+        }
+    }
+
+    private IngestionJobStatus awaitFinished(String jobId) throws InterruptedException {
+        return ingestionJobService.awaitFinished(jobId, Duration.ofSeconds(5)).orElseThrow();
+    }
+}